@@ -0,0 +1,35 @@
+package com.fusion.benchmarks;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+// Inputs shared by the benchmarks: the bundled F150 warranty guide and its segments as ingest splits them
+final class BenchmarkData {
+
+    static final String WARRANTY_GUIDE = "example-files/2025_US_F150_Warranty_Guide_ENG_V1.pdf";
+
+    private BenchmarkData() {
+    }
+
+    static Document warrantyGuide() {
+        try (InputStream in = BenchmarkData.class.getClassLoader().getResourceAsStream(WARRANTY_GUIDE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource " + WARRANTY_GUIDE);
+            }
+            return new ApachePdfBoxDocumentParser().parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<TextSegment> warrantySegments() {
+        return DocumentSplitters.recursive(300, 0).split(warrantyGuide());
+    }
+}
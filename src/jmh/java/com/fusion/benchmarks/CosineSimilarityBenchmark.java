@@ -0,0 +1,81 @@
+package com.fusion.benchmarks;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.store.embedding.CosineSimilarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Cosine similarity of two embeddings held as float[] vs as boxed List<Float> (Embedding.vectorAsList)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CosineSimilarityBenchmark {
+
+    @Param({"384", "768"})
+    public int dimension;
+
+    private float[] a;
+    private float[] b;
+    private List<Float> aList;
+    private List<Float> bList;
+    private Embedding aEmbedding;
+    private Embedding bEmbedding;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        a = new float[dimension];
+        b = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            a[i] = (float) random.nextGaussian();
+            b[i] = (float) random.nextGaussian();
+        }
+        aEmbedding = Embedding.from(a);
+        bEmbedding = Embedding.from(b);
+        aList = aEmbedding.vectorAsList();
+        bList = bEmbedding.vectorAsList();
+    }
+
+    @Benchmark
+    public double floatArray() {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    @Benchmark
+    public double floatList() {
+        double dot = 0;
+        double normA = 0;
+        double normB = 0;
+        for (int i = 0; i < aList.size(); i++) {
+            float x = aList.get(i);
+            float y = bList.get(i);
+            dot += x * y;
+            normA += x * x;
+            normB += y * y;
+        }
+        return dot / Math.sqrt(normA * normB);
+    }
+
+    @Benchmark
+    public double langchain4j() {
+        return CosineSimilarity.between(aEmbedding, bEmbedding);
+    }
+}
@@ -0,0 +1,58 @@
+package com.fusion.benchmarks;
+
+import com.fusion.utils.PDFEmbeddingProcessor;
+import com.opencsv.CSVWriter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Building and writing one CSV row of PDFEmbeddingProcessor's export (text, embedding list, metadata)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CsvRowBenchmark {
+
+    @Param({"384", "768"})
+    public int dimension;
+
+    private TextSegment segment;
+    private Embedding embedding;
+
+    @Setup
+    public void setUp() {
+        segment = BenchmarkData.warrantySegments().get(0);
+        segment.metadata().put("custom data", "this is customdata");
+        Random random = new Random(42);
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        embedding = Embedding.from(vector);
+    }
+
+    @Benchmark
+    public String[] row() {
+        return PDFEmbeddingProcessor.csvRow(segment, embedding);
+    }
+
+    @Benchmark
+    public String write() throws IOException {
+        StringWriter out = new StringWriter();
+        try (CSVWriter writer = new CSVWriter(out)) {
+            writer.writeNext(PDFEmbeddingProcessor.csvRow(segment, embedding));
+        }
+        return out.toString();
+    }
+}
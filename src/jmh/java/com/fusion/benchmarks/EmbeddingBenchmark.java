@@ -0,0 +1,82 @@
+package com.fusion.benchmarks;
+
+import com.fusion.store.PooledOnnxEmbeddingModel;
+import com.fusion.utils.ModelFiles;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// One batch of warranty guide segments embedded one call per segment vs one embedAll call,
+// on the langchain4j models and on a single-session PooledOnnxEmbeddingModel
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class EmbeddingBenchmark {
+
+    @Param({"minilm", "mpnet"})
+    public String model;
+
+    @Param({"langchain4j", "pooled"})
+    public String runtime;
+
+    @Param({"32"})
+    public int batchSize;
+
+    private EmbeddingModel embeddingModel;
+    private List<TextSegment> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        batch = BenchmarkData.warrantySegments().subList(0, batchSize);
+        boolean minilm = model.equals("minilm");
+        if (runtime.equals("langchain4j")) {
+            embeddingModel = minilm ? new AllMiniLmL6V2EmbeddingModel() : new OnnxEmbeddingModel(
+                    ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2.onnx").toString(),
+                    ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2-tokenizer.json").toString(), PoolingMode.MEAN);
+        } else {
+            // One session with every core, like a single langchain4j model instance
+            PooledOnnxEmbeddingModel.Options options = new PooledOnnxEmbeddingModel.Options(1,
+                    Runtime.getRuntime().availableProcessors(), 1, PooledOnnxEmbeddingModel.optimizationLevel("all"),
+                    true, 256, batchSize);
+            embeddingModel = minilm ? PooledOnnxEmbeddingModel.allMiniLmL6V2(options) : new PooledOnnxEmbeddingModel(
+                    ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2.onnx"),
+                    ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2-tokenizer.json"), PoolingMode.MEAN, options);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (embeddingModel instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+
+    @Benchmark
+    public void single(Blackhole blackhole) {
+        for (TextSegment segment : batch) {
+            blackhole.consume(embeddingModel.embed(segment).content());
+        }
+    }
+
+    @Benchmark
+    public List<Embedding> batched() {
+        return embeddingModel.embedAll(batch).content();
+    }
+}
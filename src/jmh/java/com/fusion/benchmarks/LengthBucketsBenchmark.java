@@ -0,0 +1,93 @@
+package com.fusion.benchmarks;
+
+import com.fusion.utils.LengthBuckets;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Batching segments of uniformly spread token lengths the way EmbeddingIngestionEngine streams them: in arrival
+// order, or regrouped by LengthBuckets one window of windowBatches batches at a time. Besides the time, each run
+// reports the padding and padded tensor tokens it produced; padding / padded is the logged padded-token ratio.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LengthBucketsBenchmark {
+
+    private static final int SEGMENTS = 4096;
+    private static final int BATCH_SIZE = 32;
+
+    // Batches per regrouped window, i.e. the ingestion engine's worker count
+    @Param({"1", "4", "16"})
+    public int windowBatches;
+
+    @Param({"128"})
+    public int maxTokens;
+
+    private int[][] windows;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Tokens {
+        public long padding;
+        public long padded;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            padding = 0;
+            padded = 0;
+        }
+
+        void add(int[] lengths, List<int[]> batches) {
+            for (int[] batch : batches) {
+                long batchPadded = LengthBuckets.paddedTokens(lengths, batch);
+                padded += batchPadded;
+                padding += batchPadded - LengthBuckets.tokens(lengths, batch);
+            }
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        int windowSize = BATCH_SIZE * windowBatches;
+        windows = new int[SEGMENTS / windowSize][windowSize];
+        for (int[] window : windows) {
+            for (int i = 0; i < window.length; i++) {
+                window[i] = 1 + random.nextInt(maxTokens);
+            }
+        }
+    }
+
+    @Benchmark
+    public int inOrder(Tokens tokens) {
+        int batches = 0;
+        for (int[] window : windows) {
+            List<int[]> grouped = LengthBuckets.inOrder(window.length, BATCH_SIZE);
+            tokens.add(window, grouped);
+            batches += grouped.size();
+        }
+        return batches;
+    }
+
+    @Benchmark
+    public int bucketed(Tokens tokens) {
+        int batches = 0;
+        for (int[] window : windows) {
+            List<int[]> grouped = LengthBuckets.group(window, BATCH_SIZE);
+            tokens.add(window, grouped);
+            batches += grouped.size();
+        }
+        return batches;
+    }
+}
@@ -0,0 +1,54 @@
+package com.fusion.benchmarks;
+
+import com.fusion.service.YugabyteEmbeddingService;
+import dev.langchain4j.data.document.Metadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// YugabyteEmbeddingService.metadataMatches on segment-sized metadata, matching and failing on the last key
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetadataFilterBenchmark {
+
+    private Metadata metadata;
+    private Map<String, String> matching;
+    private Map<String, String> mismatching;
+
+    @Setup
+    public void setUp() {
+        metadata = new Metadata();
+        metadata.put("file_name", "2025_US_F150_Warranty_Guide_ENG_V1.pdf");
+        metadata.put("doc_key", "2025_US_F150_Warranty_Guide_ENG_V1.pdf");
+        metadata.put("category", "warranty");
+        metadata.put("model_year", "2025");
+        metadata.put("language", "en");
+        metadata.put("index", "42");
+
+        matching = new HashMap<>();
+        matching.put("category", "warranty");
+        matching.put("model_year", "2025");
+        matching.put("language", "en");
+        mismatching = new HashMap<>(matching);
+        mismatching.put("language", "fr");
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return YugabyteEmbeddingService.metadataMatches(metadata, matching);
+    }
+
+    @Benchmark
+    public boolean mismatches() {
+        return YugabyteEmbeddingService.metadataMatches(metadata, mismatching);
+    }
+}
@@ -0,0 +1,38 @@
+package com.fusion.benchmarks;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Recursive splitting of the parsed warranty guide, as done on ingest
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SplitterBenchmark {
+
+    @Param({"300"})
+    public int maxSegmentSize;
+
+    private Document document;
+
+    @Setup
+    public void setUp() {
+        document = BenchmarkData.warrantyGuide();
+    }
+
+    @Benchmark
+    public List<TextSegment> recursive() {
+        return DocumentSplitters.recursive(maxSegmentSize, 0).split(document);
+    }
+}
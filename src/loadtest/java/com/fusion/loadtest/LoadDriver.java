@@ -0,0 +1,187 @@
+package com.fusion.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Sends a mix of searches and PDF uploads to the embeddings API and records what comes back.
+// Without a rate every client sends its next request as soon as the last one is answered (closed loop,
+// which finds the maximum throughput). With a rate requests are started on a fixed schedule and their
+// latency is measured from the scheduled start, so a stalled server shows up in the percentiles
+// instead of just slowing the clients down.
+final class LoadDriver {
+
+    private static final String[] QUESTIONS = {
+            "What does the bumper to bumper warranty cover",
+            "How long is the powertrain warranty",
+            "Is corrosion damage covered",
+            "What is not covered by the new vehicle limited warranty",
+            "How do I get warranty repairs",
+            "Does the warranty transfer to a new owner",
+            "What are the emissions warranty terms",
+            "Are tires covered by the warranty",
+            "What does the hybrid unique component coverage include",
+            "How is roadside assistance provided",
+            "What maintenance is the owner responsible for",
+            "Are aftermarket parts covered",
+            "What happens if the odometer is replaced",
+            "How are warranty disputes resolved",
+            "Does the warranty cover towing",
+            "What is covered for the battery"
+    };
+
+    private static final String[] QUALIFIERS = {
+            "", "for the F-150", "in 2025", "on a used truck", "after 36000 miles", "for commercial use",
+            "outside the United States", "for the hybrid model", "when the truck is modified", "under Ford Protect"
+    };
+
+    private final String apiUrl;
+    private final LoadTestOptions options;
+    private final byte[] upload;
+    private final String uploadName;
+    private final List<String> queries;
+    private final HttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong uploads = new AtomicLong();
+
+    final OperationStats searches = new OperationStats("search");
+    final OperationStats ingests = new OperationStats("ingest");
+
+    LoadDriver(String apiUrl, LoadTestOptions options, byte[] upload, String uploadName) {
+        this.apiUrl = apiUrl;
+        this.options = options;
+        this.upload = upload;
+        this.uploadName = uploadName;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool())
+                .build();
+
+        // The same pool every run, so results stay comparable; repeated queries exercise the caches
+        Random random = new Random(42);
+        queries = new ArrayList<>(options.queryPool());
+        for (int i = 0; i < options.queryPool(); i++) {
+            String question = QUESTIONS[random.nextInt(QUESTIONS.length)];
+            String qualifier = QUALIFIERS[random.nextInt(QUALIFIERS.length)];
+            queries.add(qualifier.isEmpty() ? question + "?" : question + " " + qualifier + "?");
+        }
+    }
+
+    // Uploads the document once so that searches have something to find
+    void seed() throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(ingestRequest(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding the store failed with status " + response.statusCode() + ": "
+                    + response.body());
+        }
+    }
+
+    // Runs the request mix for the given time; returns the seconds until the last request completed
+    double run(Duration duration) throws InterruptedException {
+        ExecutorService clients = Executors.newFixedThreadPool(options.clients());
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        try {
+            if (options.rate() > 0) {
+                // Scheduled starts: the dispatcher never waits for responses, queued requests count as waiting
+                long interval = (long) (1_000_000_000L / options.rate());
+                for (long intended = start; intended < end; intended += interval) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long scheduled = intended;
+                    clients.execute(() -> send(scheduled));
+                }
+            } else {
+                for (int i = 0; i < options.clients(); i++) {
+                    clients.execute(() -> {
+                        while (System.nanoTime() < end) {
+                            send(System.nanoTime());
+                        }
+                    });
+                }
+            }
+        } finally {
+            clients.shutdown();
+        }
+        // Requests in progress at the end still count, uploads can take a while
+        clients.awaitTermination(options.timeout().toMillis() + duration.toMillis(), TimeUnit.MILLISECONDS);
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    void resetStats() {
+        searches.reset();
+        ingests.reset();
+    }
+
+    private void send(long intendedStartNanos) {
+        boolean search = ThreadLocalRandom.current().nextDouble() < options.searchRatio();
+        OperationStats stats = search ? searches : ingests;
+        int status;
+        try {
+            HttpRequest request = search ? searchRequest() : ingestRequest();
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            status = OperationStats.NO_RESPONSE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        stats.record(System.nanoTime() - intendedStartNanos, status);
+    }
+
+    private HttpRequest searchRequest() throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", queries.get(ThreadLocalRandom.current().nextInt(queries.size())));
+        if (options.model() != null) {
+            body.put("embeddingModel", options.model());
+        }
+        return HttpRequest.newBuilder(URI.create(apiUrl + "/embeddings/search"))
+                .timeout(options.timeout())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+    }
+
+    // multipart/form-data with the file and, when set, the model; every upload is a new document
+    private HttpRequest ingestRequest() {
+        String boundary = "loadtest-" + UUID.randomUUID();
+        String fileName = uploads.incrementAndGet() + "-" + uploadName;
+        StringBuilder head = new StringBuilder();
+        if (options.model() != null) {
+            head.append("--").append(boundary).append("\r\n")
+                    .append("Content-Disposition: form-data; name=\"embeddingModel\"\r\n\r\n")
+                    .append(options.model()).append("\r\n");
+        }
+        head.append("--").append(boundary).append("\r\n")
+                .append("Content-Disposition: form-data; name=\"file\"; filename=\"").append(fileName).append("\"\r\n")
+                .append("Content-Type: application/pdf\r\n\r\n");
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        return HttpRequest.newBuilder(URI.create(apiUrl + "/embeddings/ingest"))
+                .timeout(options.timeout())
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(
+                        List.of(head.toString().getBytes(StandardCharsets.UTF_8), upload, tail)))
+                .build();
+    }
+}
@@ -0,0 +1,148 @@
+package com.fusion.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusion.YugabyteApplication;
+import com.fusion.utils.ModelFiles;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Load test of the search and ingest endpoints. By default it boots the application on the offline
+ * profile (in-process HNSW store, no database) in a temporary directory, uploads the bundled warranty
+ * guide once, and then drives a mix of concurrent searches and uploads. It prints throughput, error rates
+ * and latency percentiles per operation and writes them as JSON. With --url it drives a running server.
+ * Run it with {@code ./gradlew loadTest -PloadTestArgs="--duration=2m --clients=32"}.
+ */
+public class LoadTest {
+
+    private static final String API_PATH = "/api/v1/yugabyte";
+    private static final String DEFAULT_UPLOAD = "classpath:example-files/2025_US_F150_Warranty_Guide_ENG_V1.pdf";
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestOptions.usage());
+            System.exit(2);
+            return;
+        }
+
+        Path uploadPath = options.upload() != null ? options.upload() : ModelFiles.resolve(DEFAULT_UPLOAD);
+        byte[] upload = Files.readAllBytes(uploadPath);
+        String uploadName = options.upload() != null ? uploadPath.getFileName().toString()
+                : DEFAULT_UPLOAD.substring(DEFAULT_UPLOAD.lastIndexOf('/') + 1);
+
+        Path workDir = null;
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.url();
+        try {
+            if (baseUrl == null) {
+                workDir = Files.createTempDirectory("loadtest-");
+                context = boot(workDir);
+                baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            }
+
+            LoadDriver driver = new LoadDriver(baseUrl + API_PATH, options, upload, uploadName);
+            System.out.printf("Seeding %s with %s%n", baseUrl, uploadName);
+            driver.seed();
+            if (!options.warmup().isZero()) {
+                System.out.printf("Warming up for %s%n", options.warmup());
+                driver.run(options.warmup());
+                driver.resetStats();
+            }
+            System.out.printf("Running for %s with %d clients%s, %.0f%% searches%n", options.duration(), options.clients(),
+                    options.rate() > 0 ? String.format(" at %.1f requests/sec", options.rate()) : "",
+                    options.searchRatio() * 100);
+            Instant startedAt = Instant.now();
+            double elapsedSeconds = driver.run(options.duration());
+
+            List<OperationStats.Result> results = List.of(driver.searches.result(elapsedSeconds),
+                    driver.ingests.result(elapsedSeconds));
+            print(results, elapsedSeconds, System.out);
+            write(options, startedAt, elapsedSeconds, results);
+
+            boolean failed = results.stream().anyMatch(result -> result.errorRate() > options.maxErrorRate());
+            if (failed) {
+                System.err.printf("Error rate above %.2f%%%n", options.maxErrorRate() * 100);
+            }
+            close(context, workDir);
+            System.exit(failed ? 1 : 0);
+        } catch (Exception e) {
+            close(context, workDir);
+            throw e;
+        }
+    }
+
+    // The application on the offline profile with its files in workDir and an ephemeral port.
+    // Per-request info logging is turned off, it would dominate what is measured.
+    private static ConfigurableApplicationContext boot(Path workDir) {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("yugabyte.store.hnsw.path", workDir.resolve("hnsw").toString());
+        properties.put("yugabyte.cache.disk.path", workDir.resolve("embedding-cache").toString());
+        properties.put("yugabyte.projection.path", workDir.resolve("projection.bin").toString());
+        properties.put("logging.level.com.fusion", "WARN");
+        return new SpringApplicationBuilder(YugabyteApplication.class)
+                .profiles("offline")
+                .properties(properties)
+                .run();
+    }
+
+    private static void print(List<OperationStats.Result> results, double elapsedSeconds, PrintStream out) {
+        out.printf("%nCompleted in %.1f s (latencies in ms)%n", elapsedSeconds);
+        out.printf("%-8s %9s %7s %7s %9s %9s %9s %9s %9s %9s %9s%n",
+                "", "requests", "errors", "error%", "req/s", "mean", "p50", "p90", "p99", "p99.9", "max");
+        for (OperationStats.Result result : results) {
+            out.printf("%-8s %9d %7d %6.2f%% %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    result.operation(), result.requests(), result.errors(), result.errorRate() * 100, result.throughput(),
+                    result.meanMillis(), result.p50Millis(), result.p90Millis(), result.p99Millis(), result.p999Millis(),
+                    result.maxMillis());
+        }
+    }
+
+    private static void write(LoadTestOptions options, Instant startedAt, double elapsedSeconds,
+                              List<OperationStats.Result> results) throws IOException {
+        Map<String, Object> report = new HashMap<>();
+        report.put("startedAt", startedAt.toString());
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("clients", options.clients());
+        report.put("rate", options.rate());
+        report.put("searchRatio", options.searchRatio());
+        report.put("operations", results);
+
+        Path output = options.output().toAbsolutePath();
+        Files.createDirectories(output.getParent());
+        try (OutputStream out = Files.newOutputStream(output)) {
+            new ObjectMapper().writeValue(out, report);
+        }
+        System.out.printf("Report written to %s%n", output);
+    }
+
+    private static void close(ConfigurableApplicationContext context, Path workDir) throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        if (workDir != null) {
+            try (Stream<Path> files = Files.walk(workDir)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.fusion.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+// Command line of the load test: --name=value pairs, see usage()
+record LoadTestOptions(String url, Duration duration, Duration warmup, int clients, double rate, double searchRatio,
+                       Path upload, int queryPool, String model, Duration timeout, double maxErrorRate, Path output) {
+
+    static String usage() {
+        return String.join("\n",
+                "Usage: LoadTest [--name=value ...]",
+                "  --url=<base url>        drive a running server instead of booting one on the offline profile",
+                "  --duration=60s          measured run time",
+                "  --warmup=10s            run time before measuring",
+                "  --clients=16            concurrent connections",
+                "  --rate=0                requests per second across all clients; 0 sends as fast as the server answers",
+                "  --search-ratio=0.95     share of searches, the rest are PDF uploads to /embeddings/ingest",
+                "  --upload=<pdf>          uploaded file, the bundled F150 warranty guide by default",
+                "  --query-pool=1000       distinct search queries",
+                "  --model=<name>          embedding model of the requests, the server default otherwise",
+                "  --timeout=5m            per-request timeout",
+                "  --max-error-rate=0.01   exit with status 1 when an operation's error rate is higher",
+                "  --output=build/results/loadtest/report.json");
+    }
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            values.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        LoadTestOptions options = new LoadTestOptions(
+                values.remove("url"),
+                DurationStyle.detectAndParse(values.getOrDefault("duration", "60s")),
+                DurationStyle.detectAndParse(values.getOrDefault("warmup", "10s")),
+                Integer.parseInt(values.getOrDefault("clients", "16")),
+                Double.parseDouble(values.getOrDefault("rate", "0")),
+                Double.parseDouble(values.getOrDefault("search-ratio", "0.95")),
+                values.containsKey("upload") ? Paths.get(values.get("upload")) : null,
+                Integer.parseInt(values.getOrDefault("query-pool", "1000")),
+                values.get("model"),
+                DurationStyle.detectAndParse(values.getOrDefault("timeout", "5m")),
+                Double.parseDouble(values.getOrDefault("max-error-rate", "0.01")),
+                Paths.get(values.getOrDefault("output", "build/results/loadtest/report.json")));
+        for (String name : new String[]{"duration", "warmup", "clients", "rate", "search-ratio", "upload", "query-pool",
+                "model", "timeout", "max-error-rate", "output"}) {
+            values.remove(name);
+        }
+        if (!values.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + values.keySet());
+        }
+        if (options.clients() <= 0 || options.queryPool() <= 0 || options.rate() < 0
+                || options.searchRatio() < 0 || options.searchRatio() > 1) {
+            throw new IllegalArgumentException("Invalid options: " + options);
+        }
+        return options;
+    }
+}
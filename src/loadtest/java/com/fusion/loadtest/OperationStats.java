@@ -0,0 +1,65 @@
+package com.fusion.loadtest;
+
+import com.fusion.utils.LogLinearHistogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencies and outcomes of one kind of request; updated by every client thread
+final class OperationStats {
+
+    // Status recorded for requests that got no HTTP response (timeouts, connection errors)
+    static final int NO_RESPONSE = -1;
+
+    static final double[] QUANTILES = {0.5, 0.75, 0.9, 0.95, 0.99, 0.999, 0.9999};
+
+    private final String name;
+    private final LogLinearHistogram latencyMicros = new LogLinearHistogram();
+    private final LongAdder errors = new LongAdder();
+    private final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    // Every request counts towards the latencies, failed ones too
+    void record(long latencyNanos, int status) {
+        latencyMicros.record(latencyNanos / 1_000);
+        statuses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if (status < 200 || status >= 300) {
+            errors.increment();
+        }
+    }
+
+    void reset() {
+        latencyMicros.reset();
+        errors.reset();
+        statuses.clear();
+    }
+
+    Result result(double elapsedSeconds) {
+        LogLinearHistogram.Snapshot snapshot = latencyMicros.snapshot();
+        long[] values = latencyMicros.percentiles(QUANTILES);
+        Map<String, Double> percentilesMillis = new TreeMap<>();
+        for (int i = 0; i < QUANTILES.length; i++) {
+            percentilesMillis.put(String.valueOf(QUANTILES[i] * 100), values[i] / 1000.0);
+        }
+        Map<Integer, Long> statusCounts = new TreeMap<>();
+        statuses.forEach((status, count) -> statusCounts.put(status, count.sum()));
+
+        long requests = snapshot.count();
+        long failed = errors.sum();
+        return new Result(name, requests, failed, requests == 0 ? 0.0 : (double) failed / requests,
+                elapsedSeconds == 0 ? 0.0 : requests / elapsedSeconds,
+                snapshot.mean() / 1000.0, snapshot.p50() / 1000.0, snapshot.p90() / 1000.0, snapshot.p99() / 1000.0,
+                snapshot.p999() / 1000.0, snapshot.max() / 1000.0, percentilesMillis, statusCounts);
+    }
+
+    // Latencies in milliseconds; statuses counts responses per HTTP status (-1: no response)
+    record Result(String operation, long requests, long errors, double errorRate, double throughput,
+                  double meanMillis, double p50Millis, double p90Millis, double p99Millis, double p999Millis,
+                  double maxMillis, Map<String, Double> percentilesMillis, Map<Integer, Long> statuses) {
+    }
+}
@@ -0,0 +1,22 @@
+package com.fusion.config;
+
+import com.fusion.service.EmbeddingModelRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+
+@Configuration
+@EnableConfigurationProperties(EmbeddingModelProperties.class)
+public class EmbeddingModelConfig {
+
+    // Loads every configured model at startup, so a bad path or dimension fails fast
+    @Bean
+    public EmbeddingModelRegistry embeddingModelRegistry(EmbeddingModelProperties properties,
+                                                         @Value("${yugabyte.table}") String table,
+                                                         @Value("${yugabyte.dimension}") int dimension) throws IOException {
+        return EmbeddingModelRegistry.load(properties, table, dimension);
+    }
+}
@@ -0,0 +1,192 @@
+package com.fusion.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The embedding models served side by side (yugabyte.embedding in application.yml), each with its own table
+@ConfigurationProperties(prefix = "yugabyte.embedding")
+public class EmbeddingModelProperties {
+
+    // Used by requests that don't name a model; it must be stored in yugabyte.table
+    private String defaultModel = "minilm";
+
+    private Map<String, Model> models = new LinkedHashMap<>();
+
+    public String getDefaultModel() {
+        return defaultModel;
+    }
+
+    public void setDefaultModel(String defaultModel) {
+        this.defaultModel = defaultModel;
+    }
+
+    public Map<String, Model> getModels() {
+        return models;
+    }
+
+    public void setModels(Map<String, Model> models) {
+        this.models = models;
+    }
+
+    public static class Model {
+
+        // all-minilm-l6-v2 (bundled with langchain4j) or onnx
+        private String type = "onnx";
+        // Identifies the model in cache keys and content hashes; defaults to the model's name
+        private String id;
+        // ONNX model and tokenizer files, as classpath:onnx/... or a file path
+        private String path;
+        private String tokenizer;
+        // mean or cls
+        private String pooling = "mean";
+        private String table;
+        private int dimension;
+        private SessionPool sessionPool = new SessionPool();
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public String getTokenizer() {
+            return tokenizer;
+        }
+
+        public void setTokenizer(String tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        public String getPooling() {
+            return pooling;
+        }
+
+        public void setPooling(String pooling) {
+            this.pooling = pooling;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public void setTable(String table) {
+            this.table = table;
+        }
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        public void setDimension(int dimension) {
+            this.dimension = dimension;
+        }
+
+        public SessionPool getSessionPool() {
+            return sessionPool;
+        }
+
+        public void setSessionPool(SessionPool sessionPool) {
+            this.sessionPool = sessionPool;
+        }
+    }
+
+    // Runs the model on a pool of ONNX Runtime sessions with explicit thread budgets (PooledOnnxEmbeddingModel)
+    public static class SessionPool {
+
+        private boolean enabled;
+        // 0 means one session per intra-op-threads available cores
+        private int sessions;
+        private int intraOpThreads = 1;
+        private int interOpThreads = 1;
+        // none, basic, extended or all
+        private String optimizationLevel = "all";
+        private boolean memoryArena = true;
+        private int maxSequenceLength = 256;
+        // Segments per inference run; larger calls are split
+        private int batchSize = 32;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getSessions() {
+            return sessions;
+        }
+
+        public void setSessions(int sessions) {
+            this.sessions = sessions;
+        }
+
+        public int getIntraOpThreads() {
+            return intraOpThreads;
+        }
+
+        public void setIntraOpThreads(int intraOpThreads) {
+            this.intraOpThreads = intraOpThreads;
+        }
+
+        public int getInterOpThreads() {
+            return interOpThreads;
+        }
+
+        public void setInterOpThreads(int interOpThreads) {
+            this.interOpThreads = interOpThreads;
+        }
+
+        public String getOptimizationLevel() {
+            return optimizationLevel;
+        }
+
+        public void setOptimizationLevel(String optimizationLevel) {
+            this.optimizationLevel = optimizationLevel;
+        }
+
+        public boolean isMemoryArena() {
+            return memoryArena;
+        }
+
+        public void setMemoryArena(boolean memoryArena) {
+            this.memoryArena = memoryArena;
+        }
+
+        public int getMaxSequenceLength() {
+            return maxSequenceLength;
+        }
+
+        public void setMaxSequenceLength(int maxSequenceLength) {
+            this.maxSequenceLength = maxSequenceLength;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+}
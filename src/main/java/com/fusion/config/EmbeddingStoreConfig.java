@@ -0,0 +1,102 @@
+package com.fusion.config;
+
+import com.fusion.store.HnswEmbeddingStore;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+@Configuration
+public class EmbeddingStoreConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingStoreConfig.class);
+
+    // "yugabyte" stores embeddings in the pgvector table, "hnsw" in an in-process graph index
+    @Value("${yugabyte.store.backend:yugabyte}")
+    private String backend;
+
+    // Inject Yugabyte connection properties from application.properties
+    @Value("${yugabyte.host}")
+    private String host;
+
+    @Value("${yugabyte.port}")
+    private int port;
+
+    @Value("${yugabyte.database}")
+    private String database;
+
+    @Value("${yugabyte.username}")
+    private String username;
+
+    @Value("${yugabyte.password}")
+    private String password;
+
+    @Value("${yugabyte.table}")
+    private String table;
+
+    @Value("${yugabyte.dimension}")
+    private int dimension;
+
+    // Inject HNSW index settings
+    @Value("${yugabyte.store.hnsw.path:data/hnsw}")
+    private String hnswPath;
+
+    @Value("${yugabyte.store.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${yugabyte.store.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${yugabyte.store.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
+    // Spring closes the HNSW store on shutdown, flushing its mapped files
+    @Bean
+    public EmbeddingStore<TextSegment> embeddingStore() {
+        return createStore(table, dimension);
+    }
+
+    // Stores of the other models' tables; their owners close them
+    @Bean
+    public EmbeddingStoreFactory embeddingStoreFactory() {
+        return this::createStore;
+    }
+
+    private EmbeddingStore<TextSegment> createStore(String storeTable, int storeDimension) {
+        switch (backend.toLowerCase()) {
+            case "hnsw":
+                // Other tables get a subdirectory each
+                Path path = storeTable.equals(table) ? Paths.get(hnswPath) : Paths.get(hnswPath, storeTable);
+                logger.info("Using in-process HNSW embedding store at {}", path);
+                return HnswEmbeddingStore.builder()
+                        .path(path)
+                        .dimension(storeDimension)
+                        .m(hnswM)
+                        .efConstruction(hnswEfConstruction)
+                        .efSearch(hnswEfSearch)
+                        .build();
+            case "yugabyte":
+                logger.info("Using Yugabyte embedding store for table {} with host: {}, port: {}, database: {}",
+                        storeTable, host, port, database);
+                return PgVectorEmbeddingStore.builder()
+                        .host(host)
+                        .port(port)
+                        .database(database)
+                        .user(username)
+                        .password(password)
+                        .table("ragschema." + storeTable)
+                        .createTable(true)
+                        .dimension(storeDimension)
+                        .build();
+            default:
+                throw new IllegalArgumentException("Unsupported yugabyte.store.backend: " + backend + " (expected yugabyte or hnsw)");
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.fusion.config;
+
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+
+// Creates the configured store backend for one model's table
+@FunctionalInterface
+public interface EmbeddingStoreFactory {
+
+    EmbeddingStore<TextSegment> create(String table, int dimension);
+}
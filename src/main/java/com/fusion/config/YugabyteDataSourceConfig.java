@@ -2,7 +2,9 @@ package com.fusion.config;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -40,6 +42,10 @@ public class YugabyteDataSourceConfig {
     @Value("${yugabyte.datasource.max-lifetime}")
     private long maxLifetime;
 
+    // How long startup waits for a first connection; negative starts the pool without connecting
+    @Value("${yugabyte.datasource.initialization-fail-timeout:1}")
+    private long initializationFailTimeout;
+
     @Bean
     public DataSource dataSource() {
         HikariConfig config = new HikariConfig();
@@ -53,7 +59,18 @@ public class YugabyteDataSourceConfig {
         config.setIdleTimeout(idleTimeout);
         config.setConnectionTimeout(connectionTimeout);
         config.setMaxLifetime(maxLifetime);
+        config.setInitializationFailTimeout(initializationFailTimeout);
+        // Spring Boot binds this pool's hikaricp.* meters
+        config.setPoolName("yugabyte-datasource");
 
         return new HikariDataSource(config);
     }
+
+    // The services run their SQL on the static YugabyteConnectionPool, which isn't a bean. It connects when
+    // first used, so it is left alone when the store backend doesn't need the database.
+    @Bean
+    @ConditionalOnProperty(name = "yugabyte.store.backend", havingValue = "yugabyte", matchIfMissing = true)
+    public MeterBinder connectionPoolMetrics() {
+        return com.fusion.YugabyteConnectionPool::bindMetrics;
+    }
 }
\ No newline at end of file
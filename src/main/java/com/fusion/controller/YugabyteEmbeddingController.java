@@ -1,18 +1,38 @@
 package com.fusion.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fusion.service.CacheStatistics;
+import com.fusion.service.EmbeddingBatcher;
+import com.fusion.service.EmbeddingModelRegistry;
+import com.fusion.service.IngestionJob;
+import com.fusion.service.IngestionJobService;
+import com.fusion.service.IngestionListener;
+import com.fusion.service.SearchTuning;
+import com.fusion.service.VectorStorageMode;
 import com.fusion.service.YugabyteEmbeddingService;
+import com.fusion.utils.VectorCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/v1/yugabyte")
@@ -20,11 +40,28 @@ public class YugabyteEmbeddingController extends EmbeddingControllerBase {
 
     private static final Logger logger = LoggerFactory.getLogger(YugabyteEmbeddingController.class);
 
+    private static final String EMBEDDING_DIMENSION_HEADER = "X-Embedding-Dimension";
+    private static final String EMBEDDING_SCALE_HEADER = "X-Embedding-Scale";
+    // Selects the embedding model, and with it the table, of a request; the default model without it.
+    // Not "model", which uploads use as metadata, e.g. for the vehicle model.
+    private static final String MODEL_PARAM = "embeddingModel";
+    // replace=false keeps the rows of segments a re-uploaded document no longer has
+    private static final String REPLACE_PARAM = "replace";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     private final YugabyteEmbeddingService yugabyteEmbeddingService;
+    private final IngestionJobService ingestionJobService;
+    // Imports only read files below this directory
+    private final Path importDirectory;
 
     @Autowired
-    public YugabyteEmbeddingController(YugabyteEmbeddingService yugabyteEmbeddingService) {
+    public YugabyteEmbeddingController(YugabyteEmbeddingService yugabyteEmbeddingService,
+                                       IngestionJobService ingestionJobService,
+                                       @Value("${yugabyte.import.directory:data/import}") String importDirectory) {
         this.yugabyteEmbeddingService = yugabyteEmbeddingService;
+        this.ingestionJobService = ingestionJobService;
+        this.importDirectory = Paths.get(importDirectory).toAbsolutePath().normalize();
     }
 
     @PostMapping("/embeddings/ingest")
@@ -32,24 +69,89 @@ public class YugabyteEmbeddingController extends EmbeddingControllerBase {
             @RequestParam("file") MultipartFile file,
             @RequestParam Map<String, String> metadata) {
         try {
+            YugabyteEmbeddingService service = yugabyteEmbeddingService.forModel(takeModel(metadata));
+            boolean replace = takeReplace(metadata);
+
             // Save the uploaded file to a temporary location
             Path tempFile = Files.createTempFile(null, null);
             file.transferTo(tempFile.toFile());
 
             // Call the service to ingest the document using the temporary file path
-            yugabyteEmbeddingService.ingestDocument(tempFile.toString(), metadata);
+            // The original file name identifies the document, so re-uploads only re-embed what changed
+            service.ingestDocument(tempFile.toString(), file.getOriginalFilename(), metadata, replace, IngestionListener.NONE);
 
             // Delete the temporary file after ingestion
             Files.delete(tempFile);
 
             logger.info("Document ingested successfully.");
             return successResponse("Document ingested into Yugabyte embeddings store successfully.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error ingesting document to Yugabyte", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
         }
     }
 
+    // Endpoint to ingest a document asynchronously; returns a job id to poll for progress
+    @PostMapping("/embeddings/ingest/jobs")
+    public ResponseEntity<?> submitIngestionJob(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam Map<String, String> metadata) {
+        Path tempFile = null;
+        try {
+            // Spool the upload to disk so the request thread is released before parsing starts
+            tempFile = Files.createTempFile("ingest-", ".upload");
+            file.transferTo(tempFile.toFile());
+
+            String model = takeModel(metadata);
+            boolean replace = takeReplace(metadata);
+            IngestionJob.Status status = ingestionJobService.submit(tempFile, file.getOriginalFilename(), model, metadata, replace);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(tempFile);
+            logger.warn("Ingestion queue is full, rejecting upload: {}", file.getOriginalFilename());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", "30")
+                    .body("Ingestion queue is full, retry later.");
+        } catch (IllegalArgumentException e) {
+            deleteQuietly(tempFile);
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            deleteQuietly(tempFile);
+            logger.error("Error submitting ingestion job", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to get the progress of an asynchronous ingestion job
+    @GetMapping("/embeddings/ingest/jobs/{jobId}")
+    public ResponseEntity<?> getIngestionJob(@PathVariable("jobId") String jobId) {
+        return ingestionJobService.getStatus(jobId)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).body("Unknown ingestion job: " + jobId));
+    }
+
+    // Endpoint to load a CSV or binary export of precomputed embeddings from the import directory without
+    // re-embedding; path is relative to that directory, and a binary export is named by its base path or any of its files
+    @PostMapping("/embeddings/import")
+    public ResponseEntity<?> importEmbeddings(@RequestParam("path") String path, @RequestParam(value = MODEL_PARAM, required = false) String model) {
+        try {
+            Path source = importDirectory.resolve(path).normalize();
+            if (!source.startsWith(importDirectory)) {
+                return ResponseEntity.badRequest().body("The path must be inside the import directory");
+            }
+            return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).importEmbeddings(source));
+        } catch (NoSuchFileException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("No such file: " + path);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error importing embeddings from {}", path, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
     // Updated Endpoint to search Yugabyte embeddings based on query and optional metadata filter
     @Override
     @PostMapping("/embeddings/search")
@@ -59,28 +161,39 @@ public class YugabyteEmbeddingController extends EmbeddingControllerBase {
             // Extracting the query and metadata filter from the request body
             String query = (String) searchRequest.get("query");
             Map<String, String> metadataFilter = (Map<String, String>) searchRequest.get("metadataFilter");
+            // Optional recall/latency trade-off for this request
+            SearchTuning tuning = new SearchTuning(toInteger(searchRequest.get("efSearch")), toInteger(searchRequest.get("probes")));
+            YugabyteEmbeddingService service = yugabyteEmbeddingService.forModel((String) searchRequest.get(MODEL_PARAM));
 
             logger.info("Searching embeddings in Yugabyte: query={}, metadataFilter={}", query, metadataFilter);
 
             // Performing the search with the query and metadata filter
-            List<String> results = yugabyteEmbeddingService.search(query, metadataFilter);
+            List<String> results = service.search(query, metadataFilter, tuning);
 
             logger.info("Search completed successfully, results found: {}", results.size());
             return ResponseEntity.ok(results);  // Returning List<String> wrapped in ResponseEntity
+        } catch (IllegalArgumentException | ClassCastException e) {
+            return ResponseEntity.badRequest().body(List.of("Invalid search request: " + e.getMessage()));
         } catch (Exception e) {
             logger.error("Error searching embeddings in Yugabyte", e);
             return errorResponse(e);  // Returns error response
         }
     }
 
-    // Endpoint to get embedding for a given text
+    // Endpoint to get embedding for a given text. The encoding is chosen by the format parameter
+    // (json, float32, base64, float16, int8) or, without it, by the Accept header.
     @PostMapping("/embeddings/getEmbedding")
-    public ResponseEntity<List<Float>> getEmbedding(
-            @RequestParam("text") String text) {
+    public ResponseEntity<?> getEmbedding(
+            @RequestParam("text") String text,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = MODEL_PARAM, required = false) String model,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             logger.info("Getting embedding for text: {}", text);
-            List<Float> embedding = yugabyteEmbeddingService.getEmbeddingForText(text);
-            return ResponseEntity.ok(embedding);
+            float[] embedding = yugabyteEmbeddingService.forModel(model).getEmbeddingForText(text);
+            return encodedEmbedding(embedding, embedding.length, format, accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error getting embedding for text", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -88,15 +201,50 @@ public class YugabyteEmbeddingController extends EmbeddingControllerBase {
         }
     }
 
+    // Endpoint to embed many texts in one call. The body is a JSON array of strings or NDJSON
+    // (strings or {"text": ...} objects); results stream back as NDJSON lines while the input is read.
+    // format=base64 writes each vector as a base64 little-endian float32 string instead of a JSON array.
+    @PostMapping(value = "/embeddings/bulk", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getBulkEmbeddings(
+            HttpServletRequest request,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = MODEL_PARAM, required = false) String model) {
+        VectorCodec.Encoding encoding;
+        YugabyteEmbeddingService service;
+        try {
+            encoding = VectorCodec.Encoding.fromFormat(format);
+            service = yugabyteEmbeddingService.forModel(model);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejecting bulk embedding request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        logger.info("Starting bulk embedding request with format: {}", encoding);
+        StreamingResponseBody body = out -> {
+            try {
+                service.streamEmbeddings(request.getInputStream(), out, encoding);
+            } catch (Exception e) {
+                // The status is already committed, so report the failure as a final NDJSON line
+                logger.error("Error streaming bulk embeddings", e);
+                out.write(objectMapper.writeValueAsBytes(Map.of("error", String.valueOf(e.getMessage()))));
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     // Endpoint to get embedding for a given text
     @PostMapping("/embeddings/getShortEmbedding")
-    public ResponseEntity<List<Float>> getShortEmbedding(
-            @RequestParam("text") String text, @RequestParam("length") int length){
+    public ResponseEntity<?> getShortEmbedding(
+            @RequestParam("text") String text, @RequestParam("length") int length,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = MODEL_PARAM, required = false) String model,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
         try {
             logger.info("Getting embedding for text: {}", text);
-            List<Float> embedding = yugabyteEmbeddingService.getEmbeddingForText(text);
-            List<Float> shorterEmbedding = embedding.subList(0, Math.min(embedding.size(), length));
-            return ResponseEntity.ok(shorterEmbedding);
+            float[] embedding = yugabyteEmbeddingService.forModel(model).getReducedEmbeddingForText(text, Math.max(1, length));
+            return encodedEmbedding(embedding, embedding.length, format, accept);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error getting embedding for text", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -104,14 +252,114 @@ public class YugabyteEmbeddingController extends EmbeddingControllerBase {
         }
     }
 
+    // Endpoint to learn the reduced-dimension projection from the stored corpus and backfill reduced vectors
+    @PostMapping("/embeddings/projection/fit")
+    public ResponseEntity<?> fitProjection(@RequestParam("dimension") int dimension, @RequestParam(value = MODEL_PARAM, required = false) String model) {
+        try {
+            logger.info("Fitting embedding projection with dimension: {}", dimension);
+            return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).fitProjection(dimension));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error fitting embedding projection", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to describe the current projection
+    @GetMapping("/embeddings/projection")
+    public ResponseEntity<YugabyteEmbeddingService.ProjectionInfo> getProjection(@RequestParam(value = MODEL_PARAM, required = false) String model) {
+        return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).getProjectionInfo());
+    }
+
+    // Endpoint to describe how the stored vectors are represented for candidate search
+    @GetMapping("/embeddings/storage")
+    public ResponseEntity<YugabyteEmbeddingService.StorageInfo> getStorage(@RequestParam(value = MODEL_PARAM, required = false) String model) {
+        return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).getStorageInfo());
+    }
+
+    // Endpoint to convert the stored vectors to another storage mode
+    @PostMapping("/embeddings/storage/migrate")
+    public ResponseEntity<?> migrateStorage(@RequestParam("mode") String mode,
+                                            @RequestParam(value = "keepFullVectors", defaultValue = "false") boolean keepFullVectors,
+                                            @RequestParam(value = MODEL_PARAM, required = false) String model) {
+        try {
+            logger.info("Migrating embedding storage to mode: {}, keepFullVectors: {}", mode, keepFullVectors);
+            return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).migrateStorage(VectorStorageMode.fromConfig(mode), keepFullVectors));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error migrating embedding storage", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to report the state of the ANN index (definition, validity, size, build in progress)
+    @GetMapping("/embeddings/index")
+    public ResponseEntity<?> getIndex(@RequestParam(value = MODEL_PARAM, required = false) String model) {
+        try {
+            return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).getIndexState());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error describing the vector index", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to drop and rebuild the ANN index; the build continues in the background
+    @PostMapping("/embeddings/index/rebuild")
+    public ResponseEntity<?> rebuildIndex(@RequestParam(value = MODEL_PARAM, required = false) String model) {
+        try {
+            logger.info("Rebuilding the vector index");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(yugabyteEmbeddingService.forModel(model).rebuildIndex());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+        } catch (Exception e) {
+            logger.error("Error rebuilding the vector index", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
+        }
+    }
+
+    // Endpoint to list the embedding models with their tables and dimensions
+    @GetMapping("/embeddings/models")
+    public ResponseEntity<List<EmbeddingModelRegistry.ModelInfo>> getModels() {
+        return ResponseEntity.ok(yugabyteEmbeddingService.getModels());
+    }
+
+    // Endpoint to report hit/miss/eviction statistics of the query embedding and search result caches, which all
+    // models share, and of the model's persistent segment cache
+    @GetMapping("/embeddings/cache/stats")
+    public ResponseEntity<Map<String, CacheStatistics>> getCacheStats(@RequestParam(value = MODEL_PARAM, required = false) String model) {
+        Map<String, CacheStatistics> stats = new LinkedHashMap<>();
+        stats.put("embedding", yugabyteEmbeddingService.getEmbeddingCacheStats());
+        stats.put("search", yugabyteEmbeddingService.getSearchCacheStats());
+        CacheStatistics disk = yugabyteEmbeddingService.forModel(model).getDiskCacheStats();
+        if (disk != null) {
+            stats.put("disk", disk);
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    // Endpoint to report batch-size and queue-wait histograms of the embedding micro-batcher
+    @GetMapping("/embeddings/batching/stats")
+    public ResponseEntity<EmbeddingBatcher.Stats> getBatchingStats(@RequestParam(value = MODEL_PARAM, required = false) String model) {
+        return ResponseEntity.ok(yugabyteEmbeddingService.forModel(model).getBatchingStats());
+    }
+
     // Endpoint to delete entries from Yugabyte embeddings based on metadata filter
     @DeleteMapping("/embeddings/delete")
     public ResponseEntity<String> deleteYugabyteByMetadata(@RequestParam Map<String, String> metadataFilter) {
         try {
+            YugabyteEmbeddingService service = yugabyteEmbeddingService.forModel(takeModel(metadataFilter));
             logger.info("Deleting embeddings in Yugabyte based on metadata filter: {}", metadataFilter);
-            yugabyteEmbeddingService.deleteByMetadata(metadataFilter);
+            service.deleteByMetadata(metadataFilter);
             logger.info("Entries deleted successfully based on metadata filter.");
             return successResponse("Entries deleted from Yugabyte embeddings based on metadata.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error deleting entries from Yugabyte embeddings", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
@@ -120,18 +368,90 @@ public class YugabyteEmbeddingController extends EmbeddingControllerBase {
 
     // Endpoint to clear all entries from the Yugabyte embedding store
     @DeleteMapping("/embeddings/clear")
-    public ResponseEntity<String> clearAllYugabyteEntries() {
+    public ResponseEntity<String> clearAllYugabyteEntries(@RequestParam(value = MODEL_PARAM, required = false) String model) {
         try {
+            YugabyteEmbeddingService service = yugabyteEmbeddingService.forModel(model);
             logger.info("Clearing all entries from Yugabyte embeddings store.");
-            yugabyteEmbeddingService.clearAllEntries();
+            service.clearAllEntries();
             logger.info("All entries cleared successfully.");
             return successResponse("All entries cleared from Yugabyte embeddings store.");
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             logger.error("Error clearing all entries from Yugabyte embeddings store", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("An error occurred: " + e.getMessage());
         }
     }
 
+    // Writes the first length components of the vector in the negotiated encoding
+    private ResponseEntity<?> encodedEmbedding(float[] vector, int length, String format, String accept) {
+        VectorCodec.Encoding encoding = format != null
+                ? VectorCodec.Encoding.fromFormat(format)
+                : VectorCodec.Encoding.fromAccept(accept);
+        String dimension = String.valueOf(length);
+        switch (encoding) {
+            case FLOAT32:
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header(EMBEDDING_DIMENSION_HEADER, dimension)
+                        .body(VectorCodec.toFloat32(vector, length));
+            case BASE64:
+                return ResponseEntity.ok()
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .header(EMBEDDING_DIMENSION_HEADER, dimension)
+                        .body(VectorCodec.toBase64(vector, length));
+            case FLOAT16:
+                return ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(VectorCodec.FLOAT16_MEDIA_TYPE))
+                        .header(EMBEDDING_DIMENSION_HEADER, dimension)
+                        .body(VectorCodec.toFloat16(vector, length));
+            case INT8:
+                VectorCodec.Int8Vector quantized = VectorCodec.toInt8(vector, length);
+                return ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(VectorCodec.INT8_MEDIA_TYPE))
+                        .header(EMBEDDING_DIMENSION_HEADER, dimension)
+                        .header(EMBEDDING_SCALE_HEADER, String.valueOf(quantized.scale()))
+                        .body(quantized.codes());
+            default:
+                // float[] is written by Jackson directly, without boxing each component
+                return ResponseEntity.ok(length == vector.length ? vector : Arrays.copyOf(vector, length));
+        }
+    }
+
+    // The embeddingModel parameter is taken out, so the remaining parameters, including "model", are all metadata
+    private static String takeModel(Map<String, String> parameters) {
+        return parameters.remove(MODEL_PARAM);
+    }
+
+    private static boolean takeReplace(Map<String, String> parameters) {
+        String replace = parameters.remove(REPLACE_PARAM);
+        return replace == null || Boolean.parseBoolean(replace);
+    }
+
+    // Unknown model names, e.g. on endpoints without their own error handling
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> handleIllegalArgument(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    private static Integer toInteger(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof Number number ? number.intValue() : Integer.valueOf(value.toString());
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (Exception e) {
+            logger.warn("Could not delete temporary file {}", path, e);
+        }
+    }
+
    @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
     try {
@@ -0,0 +1,85 @@
+package com.fusion.examples;
+
+import com.fusion.utils.EmbeddingCopyWriter;
+import com.fusion.utils.PrecomputedEmbeddings;
+import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.UUID;
+
+// Loads precomputed embeddings written by PDFEmbeddingProcessor (a CSV, or a binary export named by its base path)
+// into the table without running the model
+public class YugabyteEmbeddingImporter {
+
+    // Usage: YugabyteEmbeddingImporter <file> [table] [dimension]
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: YugabyteEmbeddingImporter <file> [table] [dimension]");
+            return;
+        }
+
+        try {
+            String yugabyteHost = "localhost"; // Default for local setup
+            int yugabytePort = 5433;  // Default YSQL port for YugabyteDB
+            String dbName = "postgres";  // Default database name
+            String username = "yugabyte";  // Default username
+            String password = "yugabyte";  // Default password is empty
+
+            Path source = Paths.get(args[0]);
+            String table = args.length > 1 ? args[1] : "document_embeddings";
+            int dimension = args.length > 2 ? Integer.parseInt(args[2]) : 384;
+
+            try (PrecomputedEmbeddings rows = PrecomputedEmbeddings.open(source)) {
+                // Fail before touching the table if the file doesn't fit it
+                if (rows.dimension() != 0 && rows.dimension() != dimension) {
+                    throw new IllegalArgumentException(source + " holds " + rows.dimension()
+                            + "-dimension embeddings, the table " + dimension + "-dimension ones");
+                }
+
+                // Creates the table if it doesn't exist yet
+                PgVectorEmbeddingStore.builder()
+                        .host(yugabyteHost)
+                        .port(yugabytePort)
+                        .database(dbName)
+                        .user(username)
+                        .password(password)
+                        .table(table)
+                        .createTable(true)
+                        .dimension(dimension)
+                        .build();
+
+                String jdbcUrl = "jdbc:postgresql://" + yugabyteHost + ":" + yugabytePort + "/" + dbName;
+                try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password)) {
+                    long start = System.nanoTime();
+                    EmbeddingCopyWriter writer = new EmbeddingCopyWriter(connection, table, EmbeddingCopyWriter.Format.BINARY, 50_000);
+                    try {
+                        while (rows.hasNext()) {
+                            PrecomputedEmbeddings.Row row = rows.next();
+                            writer.write(UUID.randomUUID(), row.vector(), row.segment());
+                        }
+                        writer.close();
+                    } catch (Exception e) {
+                        writer.abort();
+                        throw e;
+                    }
+                    System.out.printf("Imported %d embeddings from %s into %s in %d ms (%.1f rows/sec)%n",
+                            writer.getRowsWritten(), source, table, (System.nanoTime() - start) / 1_000_000, writer.rowsPerSecond());
+
+                    // The ANN index is built once after the load instead of per row
+                    start = System.nanoTime();
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("CREATE INDEX IF NOT EXISTS " + table + "_ann_idx ON " + table
+                                + " USING hnsw (embedding vector_cosine_ops)");
+                    }
+                    System.out.printf("HNSW index built in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
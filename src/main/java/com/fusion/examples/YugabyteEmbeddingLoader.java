@@ -1,14 +1,12 @@
 package com.fusion.examples;
 
-import dev.langchain4j.data.document.Document;
-import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
-import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import com.fusion.service.CorpusIngestionPipeline;
+import com.fusion.service.EmbeddingBatchWriter;
+import com.fusion.utils.EmbeddingCopyWriter;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
 
 import java.sql.Connection;
@@ -18,9 +16,20 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 public class YugabyteEmbeddingLoader {
 
+    // Metadata of the bundled example files; other files only get their file name
+    private static final Map<String, Map<String, String>> EXAMPLE_METADATA = Map.of(
+            "2025_US_F150_Warranty_Guide_ENG_V1.pdf",
+            Map.of("company", "FORD", "product", "F150", "year", "2025", "type", "Warranty Guide"),
+            "Tesla_Models_Owners_Manual.pdf",
+            Map.of("company", "TESLA", "product", "Model S", "year", "2021", "type", "Owner's Manual"));
+
+    // Usage: YugabyteEmbeddingLoader [directory] [writer connections]
     public static void main(String[] args) {
 
         try {
@@ -30,6 +39,10 @@ public class YugabyteEmbeddingLoader {
             String username = "yugabyte";  // Default username
             String password = "yugabyte";  // Default password is empty
 
+            // Directory tree to load; defaults to the bundled example files
+            Path root = args.length > 0 ? Paths.get(args[0]) : toPath("example-files");
+            int writerCount = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+
             // Connect to Yugabyte and drop/clean the table
             String jdbcUrl = "jdbc:postgresql://" + yugabyteHost + ":" + yugabytePort + "/" + dbName;
             try (Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
@@ -40,7 +53,7 @@ public class YugabyteEmbeddingLoader {
                 System.out.println("Existing data cleared from document_embeddings table.");
             }
 
-            // Set up the PgVectorEmbeddingStore (since Yugabyte uses the PostgreSQL protocol)
+            // Set up the PgVectorEmbeddingStore (since Yugabyte uses the PostgreSQL protocol); it creates the table
             EmbeddingStore<TextSegment> embeddingStore = PgVectorEmbeddingStore.builder()
                     .host(yugabyteHost)
                     .port(yugabytePort)
@@ -52,40 +65,58 @@ public class YugabyteEmbeddingLoader {
                     .dimension(384)
                     .build();
 
-            // Initialize the embedding model
-            EmbeddingModel embeddingModel = new AllMiniLmL6V2EmbeddingModel();
-
-            // Ingestor setup
-            EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                    .documentSplitter(DocumentSplitters.recursive(300, 0))
-                    .embeddingModel(embeddingModel)
-                    .embeddingStore(embeddingStore)
-                    .build();
-
-            // Load the PDF file and metadata
-            loadDocument(ingestor, "example-files/2025_US_F150_Warranty_Guide_ENG_V1.pdf", "FORD", "F150", "2025", "Warranty Guide");
-            loadDocument(ingestor, "example-files/Tesla_Models_Owners_Manual.pdf", "TESLA", "Model S", "2021", "Owner's Manual");
+            // Initialize the embedding model; the pipeline's embed stage provides the parallelism
+            EmbeddingModel embeddingModel = new AllMiniLmL6V2EmbeddingModel(Runnable::run);
+
+            // Each write thread streams rows over its own COPY connection
+            List<Connection> connections = new ArrayList<>();
+            List<EmbeddingCopyWriter> copyWriters = new ArrayList<>();
+            try {
+                for (int i = 0; i < writerCount; i++) {
+                    Connection connection = DriverManager.getConnection(jdbcUrl, username, password);
+                    connections.add(connection);
+                    copyWriters.add(new EmbeddingCopyWriter(connection, "document_embeddings",
+                            EmbeddingCopyWriter.Format.BINARY, 50_000));
+                }
+                List<EmbeddingBatchWriter> writers = new ArrayList<>();
+                for (EmbeddingCopyWriter copyWriter : copyWriters) {
+                    writers.add(copyWriter::writeAll);
+                }
+
+                CorpusIngestionPipeline pipeline = CorpusIngestionPipeline.builder()
+                        .embeddingModel(embeddingModel)
+                        .writers(writers)
+                        .metadata(path -> EXAMPLE_METADATA.getOrDefault(path.getFileName().toString(), Map.of()))
+                        .batchSize(64)
+                        .build();
+                CorpusIngestionPipeline.Report report = pipeline.ingest(root);
+                for (EmbeddingCopyWriter copyWriter : copyWriters) {
+                    copyWriter.close();
+                }
+                System.out.println("Loaded " + root + ": " + report.format());
+                System.out.println("Bottleneck stage: " + report.bottleneck().name());
+
+                // The ANN index is built once after the load instead of per row
+                long start = System.nanoTime();
+                try (Statement statement = connections.get(0).createStatement()) {
+                    statement.execute("CREATE INDEX IF NOT EXISTS document_embeddings_ann_idx ON document_embeddings"
+                            + " USING hnsw (embedding vector_cosine_ops)");
+                }
+                System.out.printf("HNSW index built in %d ms%n", (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                copyWriters.forEach(EmbeddingCopyWriter::abort);
+                throw e;
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
-    private static void loadDocument(EmbeddingStoreIngestor ingestor, String filePathStr, String company, String product, String year, String type) throws Exception {
-        Path filePath = toPath(filePathStr);
-
-        Document document = FileSystemDocumentLoader.loadDocument(filePath, new ApachePdfBoxDocumentParser());
-        document.metadata().add("fileName", filePath.getFileName().toString());
-        document.metadata().add("company", company);
-        document.metadata().add("product", product);
-        document.metadata().add("year", year);
-        document.metadata().add("type", type);
-
-        // Ingest document into the database
-        ingestor.ingest(document);
-        System.out.println("Document loaded: " + filePathStr);
-    }
-
     private static Path toPath(String fileName) throws URISyntaxException {
         URL fileUrl = YugabyteEmbeddingLoader.class.getClassLoader().getResource(fileName);
         if (fileUrl == null) {
@@ -93,4 +124,4 @@ public class YugabyteEmbeddingLoader {
         }
         return Paths.get(fileUrl.toURI());
     }
-}
\ No newline at end of file
+}
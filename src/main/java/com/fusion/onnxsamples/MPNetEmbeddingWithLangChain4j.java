@@ -1,4 +1,5 @@
 package com.fusion.onnxsamples;
+import com.fusion.utils.ModelFiles;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
@@ -7,8 +8,8 @@ import dev.langchain4j.store.embedding.CosineSimilarity;
 public class MPNetEmbeddingWithLangChain4j {
     public static void main(String[] args) throws Exception {
         EmbeddingModel embeddingModel = new OnnxEmbeddingModel(
-                "/Users/satyaanumolu/POCs/RAGExamples/src/main/resources/onnx/all-mpnet-base-v2.onnx",
-                "/Users/satyaanumolu/POCs/RAGExamples/src/main/resources/onnx/all-mpnet-base-v2-tokenizer.json",
+                ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2.onnx").toString(),
+                ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2-tokenizer.json").toString(),
                 PoolingMode.MEAN
         );
         String englishText = "Hello, how are you doing?";
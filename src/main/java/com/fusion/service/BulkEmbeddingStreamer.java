@@ -0,0 +1,152 @@
+package com.fusion.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fusion.utils.VectorCodec;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Embeds a stream of texts and writes the results as NDJSON while the input is still being read.
+ * The input is either a JSON array of strings or a sequence of root-level values (NDJSON), each a string
+ * or an object with a "text" field. At most a fixed window of batches is in flight, so memory stays
+ * bounded however large the request is. Vectors are written as JSON arrays or, more compactly, as base64
+ * little-endian float32 strings.
+ */
+public class BulkEmbeddingStreamer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkEmbeddingStreamer.class);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final EmbeddingIngestionEngine ingestionEngine;
+    private final EmbeddingModel embeddingModel;
+    private final int batchSize;
+    private final int maxBatchesInFlight;
+
+    public BulkEmbeddingStreamer(EmbeddingIngestionEngine ingestionEngine, EmbeddingModel embeddingModel) {
+        this.ingestionEngine = ingestionEngine;
+        this.embeddingModel = embeddingModel;
+        this.batchSize = ingestionEngine.getBatchSize();
+        // Enough to keep every worker busy while the finished head batch is being written out
+        this.maxBatchesInFlight = ingestionEngine.getWorkerCount() * 2;
+    }
+
+    // Returns the number of texts embedded
+    public int stream(InputStream in, OutputStream out, VectorCodec.Encoding encoding) throws IOException {
+        if (encoding != VectorCodec.Encoding.JSON && encoding != VectorCodec.Encoding.BASE64) {
+            throw new IllegalArgumentException("Bulk embeddings support the json and base64 formats only, not: " + encoding);
+        }
+        boolean base64 = encoding == VectorCodec.Encoding.BASE64;
+        Deque<Future<List<Embedding>>> inFlight = new ArrayDeque<>();
+        int submitted = 0;
+        int written = 0;
+
+        try (JsonParser parser = jsonFactory.createParser(in);
+             JsonGenerator generator = jsonFactory.createGenerator(out)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+
+            List<TextSegment> batch = new ArrayList<>(batchSize);
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                batch.add(TextSegment.from(readText(parser, token)));
+                if (batch.size() == batchSize) {
+                    if (inFlight.size() == maxBatchesInFlight) {
+                        written = writeBatch(inFlight.removeFirst(), generator, written, base64);
+                    }
+                    inFlight.addLast(ingestionEngine.submitEmbedding(batch, embeddingModel));
+                    submitted += batch.size();
+                    batch = new ArrayList<>(batchSize);
+                }
+                token = parser.nextToken();
+            }
+            if (!batch.isEmpty()) {
+                inFlight.addLast(ingestionEngine.submitEmbedding(batch, embeddingModel));
+                submitted += batch.size();
+            }
+            while (!inFlight.isEmpty()) {
+                written = writeBatch(inFlight.removeFirst(), generator, written, base64);
+            }
+        } catch (IOException | RuntimeException e) {
+            inFlight.forEach(future -> future.cancel(true));
+            throw e;
+        }
+
+        logger.info("Bulk embedding completed: {} texts submitted, {} written.", submitted, written);
+        return written;
+    }
+
+    private static String readText(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_STRING) {
+            return parser.getText();
+        }
+        if (token == JsonToken.START_OBJECT) {
+            String text = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("text".equals(field) && value == JsonToken.VALUE_STRING) {
+                    text = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (text != null) {
+                return text;
+            }
+        }
+        throw new IllegalArgumentException("Expected a string or an object with a \"text\" field, found: " + token);
+    }
+
+    // Writes one {"index":n,"embedding":...} line per result, then flushes so the client sees the batch
+    private static int writeBatch(Future<List<Embedding>> future, JsonGenerator generator, int index, boolean base64) throws IOException {
+        List<Embedding> embeddings;
+        try {
+            embeddings = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for embeddings", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Embedding batch failed", e.getCause());
+        }
+        for (Embedding embedding : embeddings) {
+            generator.writeStartObject();
+            generator.writeNumberField("index", index++);
+            float[] vector = embedding.vector();
+            if (base64) {
+                generator.writeStringField("embedding", VectorCodec.toBase64(vector, vector.length));
+            } else {
+                generator.writeFieldName("embedding");
+                generator.writeStartArray();
+                for (float value : vector) {
+                    generator.writeNumber(value);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        return index;
+    }
+}
@@ -0,0 +1,5 @@
+package com.fusion.service;
+
+// Snapshot of an in-process cache's counters, as reported by the cache stats endpoint
+public record CacheStatistics(long size, long hits, long misses, double hitRate, long evictions) {
+}
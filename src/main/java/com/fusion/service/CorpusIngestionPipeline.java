@@ -0,0 +1,460 @@
+package com.fusion.service;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentParser;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
+import dev.langchain4j.data.document.parser.TextDocumentParser;
+import dev.langchain4j.data.document.parser.apache.pdfbox.ApachePdfBoxDocumentParser;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+// Loads a directory tree of documents through separate discover -> parse -> split -> embed -> write stages.
+// Each stage has its own thread pool and bounded queues sit between the stages, so a slow stage holds back
+// the ones before it while CPU-bound parsing and embedding overlap with database writes.
+// Per-stage utilization is logged while loading and returned at the end to show which stage is the bottleneck.
+public class CorpusIngestionPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(CorpusIngestionPipeline.class);
+
+    private static final long POLL_MILLIS = 100;
+
+    // Files with any other extension are skipped during discovery
+    private static final Set<String> TEXT_EXTENSIONS = Set.of("txt", "md", "csv", "json", "html", "xml");
+
+    private final EmbeddingModel embeddingModel;
+    private final List<EmbeddingBatchWriter> writers;
+    private final Function<Path, Map<String, String>> metadata;
+    private final int parseThreads;
+    private final int splitThreads;
+    private final int embedThreads;
+    private final int batchSize;
+    private final int queueCapacity;
+    private final int maxSegmentChars;
+    private final int overlapChars;
+    private final Duration progressInterval;
+
+    private CorpusIngestionPipeline(Builder builder) {
+        this.embeddingModel = builder.embeddingModel;
+        this.writers = List.copyOf(builder.writers);
+        this.metadata = builder.metadata;
+        this.parseThreads = builder.parseThreads;
+        this.splitThreads = builder.splitThreads;
+        this.embedThreads = builder.embedThreads;
+        this.batchSize = builder.batchSize;
+        this.queueCapacity = builder.queueCapacity;
+        this.maxSegmentChars = builder.maxSegmentChars;
+        this.overlapChars = builder.overlapChars;
+        this.progressInterval = builder.progressInterval;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // Ingests every supported file under root. Files that fail to parse are logged and skipped;
+    // a failed embedding or write stops the whole run.
+    public Report ingest(Path root) throws InterruptedException, ExecutionException {
+        Run run = new Run();
+        BlockingQueue<Path> files = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Document> documents = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<TextSegment>> batches = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<EmbeddedBatch> embedded = new ArrayBlockingQueue<>(queueCapacity);
+        DocumentSplitter splitter = DocumentSplitters.recursive(maxSegmentChars, overlapChars);
+
+        // Upstream stages start first, so no stage sees its producer as finished before it has begun
+        Stage discover = run.stage("discover", 1, files);
+        Stage parse = run.stage("parse", parseThreads, documents);
+        Stage split = run.stage("split", splitThreads, batches);
+        Stage embed = run.stage("embed", embedThreads, embedded);
+        Stage write = run.stage("write", writers.size(), null);
+
+        discover.run(() -> {
+            try (Stream<Path> paths = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile).filter(CorpusIngestionPipeline::isSupported)::iterator) {
+                    discover.items.increment();
+                    run.put(files, path, discover);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not walk " + root, e);
+            }
+        });
+        parse.consume(files, discover, path -> {
+            Document document = parse(path, run);
+            if (document != null) {
+                run.put(documents, document, parse);
+            }
+        });
+        split.consume(documents, parse, document -> {
+            List<TextSegment> segments = splitter.split(document);
+            run.segments.add(segments.size());
+            for (int from = 0; from < segments.size(); from += batchSize) {
+                run.put(batches, new ArrayList<>(segments.subList(from, Math.min(from + batchSize, segments.size()))), split);
+            }
+        });
+        embed.consume(batches, split, batch -> {
+            List<Embedding> embeddings = embeddingModel.embedAll(batch).content();
+            run.put(embedded, new EmbeddedBatch(embeddings, batch), embed);
+        });
+        // Each write thread has a writer of its own, e.g. a separate COPY connection
+        for (EmbeddingBatchWriter writer : writers) {
+            write.consumeOne(embedded, embed, batch -> writer.write(batch.embeddings(), batch.segments()));
+        }
+
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(EmbeddingIngestionEngine.namedThreads("corpus-progress"));
+        long interval = progressInterval.toMillis();
+        progress.scheduleAtFixedRate(() -> logger.info("Corpus ingestion progress: {}", run.report().format()),
+                interval, interval, TimeUnit.MILLISECONDS);
+        try {
+            run.awaitStages();
+        } catch (InterruptedException e) {
+            run.fail(e);
+            run.shutdownNow();
+            throw e;
+        } finally {
+            progress.shutdownNow();
+        }
+
+        Report report = run.report();
+        if (run.failure.get() != null) {
+            throw new ExecutionException("Corpus ingestion of " + root + " failed", run.failure.get());
+        }
+        logger.info("Corpus ingestion of {} finished: {}", root, report.format());
+        logger.info("Bottleneck stage: {}", report.bottleneck().name());
+        return report;
+    }
+
+    private Document parse(Path path, Run run) {
+        try {
+            Document document = FileSystemDocumentLoader.loadDocument(path, parserFor(path));
+            metadata.apply(path).forEach((key, value) -> document.metadata().put(key, value));
+            return document;
+        } catch (RuntimeException e) {
+            // One unreadable file shouldn't stop a corpus load
+            run.failedFiles.increment();
+            logger.warn("Skipping {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private static DocumentParser parserFor(Path path) {
+        return "pdf".equals(extension(path)) ? new ApachePdfBoxDocumentParser() : new TextDocumentParser();
+    }
+
+    private static boolean isSupported(Path path) {
+        String extension = extension(path);
+        return "pdf".equals(extension) || TEXT_EXTENSIONS.contains(extension);
+    }
+
+    private static String extension(Path path) {
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    @FunctionalInterface
+    private interface Worker<T> {
+        void accept(T item) throws Exception;
+    }
+
+    private record EmbeddedBatch(List<Embedding> embeddings, List<TextSegment> segments) {
+    }
+
+    // State of one ingest call
+    private final class Run {
+
+        private final long startNanos = System.nanoTime();
+        private final List<Stage> stages = new ArrayList<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final LongAdder failedFiles = new LongAdder();
+        private final LongAdder segments = new LongAdder();
+
+        Stage stage(String name, int threads, BlockingQueue<?> output) {
+            Stage stage = new Stage(this, name, threads, output);
+            stages.add(stage);
+            return stage;
+        }
+
+        void fail(Throwable e) {
+            if (failure.compareAndSet(null, e)) {
+                logger.error("Corpus ingestion failed, stopping all stages", e);
+            }
+        }
+
+        // Blocks while the queue is full; time spent here is backpressure from the next stage, not work
+        <T> void put(BlockingQueue<T> queue, T item, Stage producer) throws InterruptedException {
+            long start = System.nanoTime();
+            try {
+                while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    if (failure.get() != null) {
+                        throw new CancellationException("Corpus ingestion failed");
+                    }
+                }
+            } finally {
+                producer.blockedNanos.add(System.nanoTime() - start);
+            }
+        }
+
+        void awaitStages() throws InterruptedException {
+            for (Stage stage : stages) {
+                stage.pool.shutdown();
+            }
+            for (Stage stage : stages) {
+                while (!stage.pool.awaitTermination(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // Keep waiting; a failure makes every stage drain out within one poll interval
+                }
+            }
+        }
+
+        void shutdownNow() {
+            stages.forEach(stage -> stage.pool.shutdownNow());
+        }
+
+        Report report() {
+            long elapsed = System.nanoTime() - startNanos;
+            List<StageStats> stats = new ArrayList<>();
+            for (Stage stage : stages) {
+                stats.add(stage.stats(elapsed));
+            }
+            return new Report(stages.get(0).items.intValue(), failedFiles.intValue(), segments.sum(), elapsed, stats);
+        }
+    }
+
+    private static final class Stage {
+
+        private final Run run;
+        private final String name;
+        private final int threads;
+        private final BlockingQueue<?> output;
+        private final ExecutorService pool;
+        private final AtomicInteger running = new AtomicInteger();
+        private final LongAdder items = new LongAdder();
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder blockedNanos = new LongAdder();
+
+        Stage(Run run, String name, int threads, BlockingQueue<?> output) {
+            this.run = run;
+            this.name = name;
+            this.threads = threads;
+            this.output = output;
+            this.pool = Executors.newFixedThreadPool(threads, EmbeddingIngestionEngine.namedThreads("corpus-" + name));
+        }
+
+        // Runs a single producing task on the stage's pool
+        void run(Task task) {
+            running.incrementAndGet();
+            pool.execute(() -> {
+                long start = System.nanoTime();
+                try {
+                    task.run();
+                } catch (CancellationException e) {
+                    // Another stage failed
+                } catch (Throwable e) {
+                    run.fail(e);
+                } finally {
+                    busyNanos.add(System.nanoTime() - start);
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        // Starts one worker per thread of the stage
+        <T> void consume(BlockingQueue<T> input, Stage upstream, Worker<T> worker) {
+            for (int i = 0; i < threads; i++) {
+                consumeOne(input, upstream, worker);
+            }
+        }
+
+        // Starts one worker that takes items until the upstream stage has finished and its queue is empty
+        <T> void consumeOne(BlockingQueue<T> input, Stage upstream, Worker<T> worker) {
+            running.incrementAndGet();
+            pool.execute(() -> {
+                try {
+                    while (run.failure.get() == null) {
+                        T item = input.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        if (item == null) {
+                            // Checked in this order, since a producer queues its last item before it finishes
+                            if (upstream.isFinished() && input.isEmpty()) {
+                                break;
+                            }
+                            continue;
+                        }
+                        long start = System.nanoTime();
+                        try {
+                            worker.accept(item);
+                        } finally {
+                            busyNanos.add(System.nanoTime() - start);
+                            items.increment();
+                        }
+                    }
+                } catch (CancellationException e) {
+                    // Another stage failed
+                } catch (Throwable e) {
+                    run.fail(e);
+                } finally {
+                    running.decrementAndGet();
+                }
+            });
+        }
+
+        boolean isFinished() {
+            return running.get() == 0;
+        }
+
+        StageStats stats(long elapsedNanos) {
+            double capacity = (double) threads * elapsedNanos;
+            long blocked = blockedNanos.sum();
+            long working = Math.max(0, busyNanos.sum() - blocked);
+            return new StageStats(name, threads, items.sum(), capacity == 0 ? 0.0 : working / capacity,
+                    capacity == 0 ? 0.0 : blocked / capacity, output == null ? 0 : output.size());
+        }
+    }
+
+    // utilization: share of the stage's thread time spent working; blocked: waiting for room in the next queue.
+    // The rest is idle time waiting for input. queued: items waiting in the stage's output queue.
+    public record StageStats(String name, int threads, long items, double utilization, double blocked, int queued) {
+    }
+
+    public record Report(int files, int failedFiles, long segments, long elapsedNanos, List<StageStats> stages) {
+
+        public long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public double segmentsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : segments * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        // The stage whose threads were busiest; adding threads there should raise throughput the most
+        public StageStats bottleneck() {
+            return stages.stream().max(Comparator.comparingDouble(StageStats::utilization)).orElseThrow();
+        }
+
+        public String format() {
+            StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+                    "%d files (%d failed), %d segments in %d ms (%.1f segments/sec)",
+                    files, failedFiles, segments, elapsedMillis(), segmentsPerSecond()));
+            for (StageStats stage : stages) {
+                text.append(String.format(Locale.ROOT, "; %s[%d] %d items, %.0f%% busy, %.0f%% blocked, %d queued",
+                        stage.name(), stage.threads(), stage.items(), stage.utilization() * 100, stage.blocked() * 100, stage.queued()));
+            }
+            return text.toString();
+        }
+    }
+
+    public static class Builder {
+
+        private EmbeddingModel embeddingModel;
+        private List<EmbeddingBatchWriter> writers;
+        private Function<Path, Map<String, String>> metadata = path -> Map.of();
+        private int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        private int splitThreads = 1;
+        private int embedThreads = Runtime.getRuntime().availableProcessors();
+        private int batchSize = 32;
+        private int queueCapacity = 64;
+        private int maxSegmentChars = 300;
+        private int overlapChars = 0;
+        private Duration progressInterval = Duration.ofSeconds(10);
+
+        public Builder embeddingModel(EmbeddingModel embeddingModel) {
+            this.embeddingModel = embeddingModel;
+            return this;
+        }
+
+        // One write thread per writer; a writer is only ever called from its own thread
+        public Builder writers(List<EmbeddingBatchWriter> writers) {
+            this.writers = writers;
+            return this;
+        }
+
+        // Extra metadata for the segments of each file
+        public Builder metadata(Function<Path, Map<String, String>> metadata) {
+            this.metadata = metadata;
+            return this;
+        }
+
+        public Builder parseThreads(int parseThreads) {
+            this.parseThreads = parseThreads;
+            return this;
+        }
+
+        public Builder splitThreads(int splitThreads) {
+            this.splitThreads = splitThreads;
+            return this;
+        }
+
+        public Builder embedThreads(int embedThreads) {
+            this.embedThreads = embedThreads;
+            return this;
+        }
+
+        public Builder batchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        // Capacity of each queue between two stages
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public Builder segmentSize(int maxSegmentChars, int overlapChars) {
+            this.maxSegmentChars = maxSegmentChars;
+            this.overlapChars = overlapChars;
+            return this;
+        }
+
+        public Builder progressInterval(Duration progressInterval) {
+            this.progressInterval = progressInterval;
+            return this;
+        }
+
+        public CorpusIngestionPipeline build() {
+            if (embeddingModel == null || writers == null || writers.isEmpty()) {
+                throw new IllegalArgumentException("embeddingModel and at least one writer are required");
+            }
+            if (parseThreads <= 0 || splitThreads <= 0 || embedThreads <= 0 || batchSize <= 0 || queueCapacity <= 0) {
+                throw new IllegalArgumentException("Thread counts, batch size and queue capacity must be positive");
+            }
+            if (progressInterval.isZero() || progressInterval.isNegative()) {
+                throw new IllegalArgumentException("progressInterval must be positive");
+            }
+            return new CorpusIngestionPipeline(this);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.fusion.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.util.List;
+
+// Destination for embedded batches, e.g. an EmbeddingStore or a COPY stream.
+// Called concurrently from the ingestion engine's workers.
+@FunctionalInterface
+public interface EmbeddingBatchWriter {
+
+    void write(List<Embedding> embeddings, List<TextSegment> segments) throws Exception;
+}
@@ -0,0 +1,169 @@
+package com.fusion.service;
+
+import com.fusion.utils.LogLinearHistogram;
+import com.fusion.utils.TokenCounter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent single-text embedding requests into batched embedAll calls.
+ * A batch is dispatched as soon as it is full, its oldest request has waited maxWait, or an inference
+ * slot is idle. The last rule means a lone request at low load is never held back.
+ * Only models that run padded batches (see {@link TokenCounter}) gain from coalescing; other models embed
+ * a list one text at a time, so their requests go straight to the model on the caller's thread.
+ */
+public class EmbeddingBatcher implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingBatcher.class);
+
+    private final EmbeddingModel embeddingModel;
+    private final int maxBatchSize;
+    private final long maxWaitNanos;
+    private final int concurrency;
+    private final boolean coalescing;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Semaphore inferenceSlots;
+    // Null when not coalescing
+    private final ExecutorService inferenceWorkers;
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    private final LogLinearHistogram batchSizes = new LogLinearHistogram();
+    private final LogLinearHistogram queueWaitMicros = new LogLinearHistogram();
+
+    public EmbeddingBatcher(EmbeddingModel embeddingModel, int maxBatchSize, Duration maxWait, int concurrency) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.embeddingModel = embeddingModel;
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        // A concurrency of 0 means one inference slot per available core
+        this.concurrency = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        this.coalescing = TokenCounter.of(embeddingModel) != null;
+        this.inferenceSlots = new Semaphore(this.concurrency);
+        if (coalescing) {
+            this.inferenceWorkers = Executors.newFixedThreadPool(this.concurrency, EmbeddingIngestionEngine.namedThreads("embedding-batch"));
+            this.dispatcher = new Thread(this::dispatchLoop, "embedding-batch-dispatcher");
+            this.dispatcher.setDaemon(true);
+            this.dispatcher.start();
+        } else {
+            this.inferenceWorkers = null;
+            this.dispatcher = null;
+        }
+
+        logger.info("Initialized EmbeddingBatcher with maxBatchSize: {}, maxWait: {}, concurrency: {}, coalescing: {}",
+                maxBatchSize, maxWait, this.concurrency, coalescing);
+    }
+
+    public CompletableFuture<float[]> embed(String text) {
+        Request request = new Request(text, new CompletableFuture<>(), System.nanoTime());
+        if (!running) {
+            request.result().completeExceptionally(new IllegalStateException("EmbeddingBatcher is closed"));
+            return request.result();
+        }
+        if (!coalescing) {
+            runBatch(List.of(request));
+            return request.result();
+        }
+        queue.add(request);
+        return request.result();
+    }
+
+    public Stats stats() {
+        return new Stats(batchSizes.snapshot(), queueWaitMicros.snapshot());
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (!coalescing) {
+            return;
+        }
+        dispatcher.interrupt();
+        inferenceWorkers.shutdownNow();
+        List<Request> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.forEach(request -> request.result().completeExceptionally(new IllegalStateException("EmbeddingBatcher is closed")));
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                List<Request> batch = new ArrayList<>(maxBatchSize);
+                Request first = queue.take();
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+
+                // Only linger for more requests while other batches are already running
+                long deadline = first.enqueuedNanos() + maxWaitNanos;
+                while (batch.size() < maxBatchSize && inferenceSlots.availablePermits() < concurrency) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                // Requests keep queueing while every slot is busy; top the batch up once one frees
+                inferenceSlots.acquire();
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                inferenceWorkers.execute(() -> {
+                    try {
+                        runBatch(batch);
+                    } finally {
+                        inferenceSlots.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void runBatch(List<Request> batch) {
+        long startNanos = System.nanoTime();
+        batchSizes.record(batch.size());
+        List<TextSegment> segments = new ArrayList<>(batch.size());
+        for (Request request : batch) {
+            queueWaitMicros.record(TimeUnit.NANOSECONDS.toMicros(startNanos - request.enqueuedNanos()));
+            segments.add(TextSegment.from(request.text()));
+        }
+        try {
+            List<Embedding> embeddings = embeddingModel.embedAll(segments).content();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(embeddings.get(i).vector());
+            }
+        } catch (Exception e) {
+            logger.error("Batched embedding of {} texts failed", batch.size(), e);
+            batch.forEach(request -> request.result().completeExceptionally(e));
+        }
+    }
+
+    private record Request(String text, CompletableFuture<float[]> result, long enqueuedNanos) {
+    }
+
+    public record Stats(LogLinearHistogram.Snapshot batchSize, LogLinearHistogram.Snapshot queueWaitMicros) {
+    }
+}
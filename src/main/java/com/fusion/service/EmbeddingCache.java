@@ -0,0 +1,71 @@
+package com.fusion.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// Size- and TTL-bounded cache of query text -> embedding vector, so repeated queries skip inference.
+// Caffeine's eviction policy is W-TinyLFU, which keeps frequently repeated questions resident.
+@Component
+public class EmbeddingCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCache.class);
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Cache<Key, float[]> cache;
+
+    public EmbeddingCache(
+            @Value("${yugabyte.cache.embedding.max-size:10000}") long maxSize,
+            @Value("${yugabyte.cache.embedding.ttl:1h}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        logger.info("Initialized EmbeddingCache with maxSize: {}, ttl: {}", maxSize, ttl);
+    }
+
+    // Returns the cached vector for the normalized text, computing it with the embedder on a miss.
+    // The returned array is shared with the cache and must not be modified.
+    public float[] get(String modelId, String text, Function<String, float[]> embedder) {
+        String normalized = normalize(text);
+        return cache.get(new Key(modelId, normalized), key -> embedder.apply(key.text()));
+    }
+
+    // Hit, miss, eviction and size meters, bound by the actuator's meter registry
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "rag.cache.query.embedding");
+    }
+
+    public CacheStatistics stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    // Unicode NFC, trimmed, with runs of whitespace collapsed to a single space
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC);
+        return WHITESPACE.matcher(normalized.trim()).replaceAll(" ");
+    }
+
+    record Key(String modelId, String text) {
+    }
+}
@@ -0,0 +1,275 @@
+package com.fusion.service;
+
+import com.fusion.utils.LengthBuckets;
+import com.fusion.utils.TokenCounter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Embeds text segments in batches on a bounded pool of workers and writes each batch to the store
+@Component
+public class EmbeddingIngestionEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingIngestionEngine.class);
+
+    private final int batchSize;
+    private final int workerCount;
+    private final boolean lengthBuckets;
+    private final ExecutorService workers;
+
+    public EmbeddingIngestionEngine(
+            @Value("${yugabyte.ingest.batch-size:32}") int batchSize,
+            @Value("${yugabyte.ingest.workers:0}") int workers,
+            @Value("${yugabyte.ingest.length-buckets:true}") boolean lengthBuckets) {
+
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("yugabyte.ingest.batch-size must be positive: " + batchSize);
+        }
+        this.batchSize = batchSize;
+        // A worker count of 0 means one worker per available core
+        this.workerCount = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.lengthBuckets = lengthBuckets;
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), namedThreads("embedding-worker"));
+
+        logger.info("Initialized EmbeddingIngestionEngine with batchSize: {}, workers: {}, length buckets: {}",
+                batchSize, workerCount, lengthBuckets);
+    }
+
+    // Embeds and stores all segments, returning once every batch has been written
+    public IngestionStats ingest(List<TextSegment> segments,
+                                 EmbeddingModel embeddingModel,
+                                 EmbeddingStore<TextSegment> embeddingStore) throws InterruptedException, ExecutionException {
+        return ingest(segments, embeddingModel, embeddingStore, IngestionListener.NONE);
+    }
+
+    // Same as above, notifying the listener as each batch is written
+    public IngestionStats ingest(List<TextSegment> segments,
+                                 EmbeddingModel embeddingModel,
+                                 EmbeddingStore<TextSegment> embeddingStore,
+                                 IngestionListener listener) throws InterruptedException, ExecutionException {
+        return ingest(segments, embeddingModel, embeddingStore::addAll, listener);
+    }
+
+    // Embeds all segments and hands each batch to the writer, e.g. a COPY stream
+    public IngestionStats ingest(List<TextSegment> segments,
+                                 EmbeddingModel embeddingModel,
+                                 EmbeddingBatchWriter writer,
+                                 IngestionListener listener) throws InterruptedException, ExecutionException {
+        long startNanos = System.nanoTime();
+
+        Padding padding = new Padding();
+        List<Future<Integer>> batches = new ArrayList<>();
+        for (List<TextSegment> batch : split(segments, embeddingModel, padding)) {
+            batches.add(workers.submit(() -> {
+                int stored = embedAndWrite(batch, embeddingModel, writer);
+                listener.onBatchStored(stored);
+                return stored;
+            }));
+        }
+
+        int stored = 0;
+        try {
+            for (Future<Integer> batch : batches) {
+                stored += batch.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            // Don't leave the remaining batches running once one has failed
+            batches.forEach(batch -> batch.cancel(true));
+            throw e;
+        }
+
+        IngestionStats stats = new IngestionStats(stored, batches.size(), System.nanoTime() - startNanos,
+                padding.tokens, padding.paddedTokens);
+        logger.info("Embedded and stored {} segments in {} batches in {} ms ({} segments/sec, {} padding).",
+                stats.segments(), stats.batches(), stats.elapsedMillis(), String.format("%.1f", stats.segmentsPerSecond()),
+                stats.paddingPercent());
+        return stats;
+    }
+
+    // Embeds segments as the iterator produces them, e.g. while a document is still being read.
+    // At most two batches per worker are pulled ahead of the writer, so memory stays bounded however many
+    // segments there are. With length buckets one batch per worker is read ahead as a window and regrouped
+    // by token length first. The iterator is only advanced on the calling thread.
+    public IngestionStats ingest(Iterator<TextSegment> segments,
+                                 EmbeddingModel embeddingModel,
+                                 EmbeddingBatchWriter writer,
+                                 IngestionListener listener) throws InterruptedException, ExecutionException {
+        long startNanos = System.nanoTime();
+        int maxInFlight = workerCount * 2;
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicInteger stored = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Padding padding = new Padding();
+        int windowSize = bucketing(embeddingModel) != null ? batchSize * workerCount : batchSize;
+
+        int batches = 0;
+        try {
+            while (failure.get() == null && segments.hasNext()) {
+                List<TextSegment> window = new ArrayList<>(windowSize);
+                while (window.size() < windowSize && segments.hasNext()) {
+                    window.add(segments.next());
+                }
+                for (List<TextSegment> batch : split(window, embeddingModel, padding)) {
+                    inFlight.acquire();
+                    try {
+                        workers.execute(() -> {
+                            try {
+                                // Skip the work once another batch has failed
+                                if (failure.get() == null) {
+                                    int written = embedAndWrite(batch, embeddingModel, writer);
+                                    stored.addAndGet(written);
+                                    listener.onBatchStored(written);
+                                }
+                            } catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                    } catch (RejectedExecutionException e) {
+                        // The task never runs to release its permit, and the wait below needs all of them back
+                        inFlight.release();
+                        throw e;
+                    }
+                    batches++;
+                }
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            // Queued batches see the failure and skip; let the running ones finish before the caller cleans up
+            failure.compareAndSet(null, e);
+            inFlight.acquireUninterruptibly(maxInFlight);
+            throw e;
+        }
+        // Wait for the batches still running
+        inFlight.acquire(maxInFlight);
+        if (failure.get() != null) {
+            throw new ExecutionException(failure.get());
+        }
+
+        IngestionStats stats = new IngestionStats(stored.get(), batches, System.nanoTime() - startNanos,
+                padding.tokens, padding.paddedTokens);
+        logger.info("Embedded and stored {} streamed segments in {} batches in {} ms ({} segments/sec, {} padding).",
+                stats.segments(), stats.batches(), stats.elapsedMillis(), String.format("%.1f", stats.segmentsPerSecond()),
+                stats.paddingPercent());
+        return stats;
+    }
+
+    // Embeds one batch on the engine's workers without storing it
+    public Future<List<Embedding>> submitEmbedding(List<TextSegment> batch, EmbeddingModel embeddingModel) {
+        return workers.submit(() -> embeddingModel.embedAll(batch).content());
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private int embedAndWrite(List<TextSegment> batch,
+                              EmbeddingModel embeddingModel,
+                              EmbeddingBatchWriter writer) throws Exception {
+        List<Embedding> embeddings = embeddingModel.embedAll(batch).content();
+        writer.write(embeddings, batch);
+        return batch.size();
+    }
+
+    // The model's token counter when segments should be grouped by length, otherwise null
+    private TokenCounter bucketing(EmbeddingModel embeddingModel) {
+        return lengthBuckets ? TokenCounter.of(embeddingModel) : null;
+    }
+
+    // Cuts segments into batches. Segments of similar token length share a batch when the model pads its
+    // batches; the writer pairs every batch with its own embeddings, so the store doesn't see the reordering.
+    private List<List<TextSegment>> split(List<TextSegment> segments, EmbeddingModel embeddingModel, Padding padding) {
+        TokenCounter counter = bucketing(embeddingModel);
+        if (counter == null) {
+            List<List<TextSegment>> batches = new ArrayList<>();
+            for (int from = 0; from < segments.size(); from += batchSize) {
+                batches.add(segments.subList(from, Math.min(from + batchSize, segments.size())));
+            }
+            return batches;
+        }
+
+        int[] lengths = counter.count(segments.stream().map(TextSegment::text).toList());
+        List<List<TextSegment>> batches = new ArrayList<>();
+        for (int[] bucket : LengthBuckets.group(lengths, batchSize)) {
+            List<TextSegment> batch = new ArrayList<>(bucket.length);
+            for (int position : bucket) {
+                batch.add(segments.get(position));
+            }
+            batches.add(batch);
+            padding.tokens += LengthBuckets.tokens(lengths, bucket);
+            padding.paddedTokens += LengthBuckets.paddedTokens(lengths, bucket);
+        }
+        return batches;
+    }
+
+    // Token totals of the batches formed by one ingest call; only touched on the calling thread
+    private static final class Padding {
+        long tokens;
+        long paddedTokens;
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Outcome of a single ingest call. tokens / paddedTokens are the real and padded batch sizes in tokens,
+    // both 0 when the model doesn't report token counts.
+    public record IngestionStats(int segments, int batches, long elapsedNanos, long tokens, long paddedTokens) {
+
+        public IngestionStats(int segments, int batches, long elapsedNanos) {
+            this(segments, batches, elapsedNanos, 0, 0);
+        }
+
+        public double paddingRatio() {
+            return LengthBuckets.paddingRatio(tokens, paddedTokens);
+        }
+
+        public String paddingPercent() {
+            return paddedTokens == 0 ? "n/a" : String.format("%.1f%%", paddingRatio() * 100);
+        }
+
+        public long elapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        }
+
+        public double segmentsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : segments * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.fusion.service;
+
+import com.fusion.store.DiskEmbeddingCache;
+import com.fusion.store.TimedEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+// Meters of the ingest and search stages, tagged with the embedding model. Exposed on /actuator/prometheus;
+// percentile histograms for every rag.* meter are turned on in application.yml.
+@Component
+public class EmbeddingMetrics {
+
+    public static final String MODEL_TAG = "model";
+
+    public static final String PARSE = "rag.ingest.parse";
+    public static final String SPLIT = "rag.ingest.split";
+    public static final String EMBED = "rag.embed";
+    public static final String EMBED_BATCH_SIZE = "rag.embed.batch.size";
+    public static final String SEARCH = "rag.search";
+    public static final String INSERT = "rag.db.insert";
+    public static final String DELETE = "rag.db.delete";
+    public static final String SEGMENTS_INGESTED = "rag.ingest.segments";
+    public static final String DISK_CACHE = "rag.cache.disk";
+
+    private final MeterRegistry registry;
+
+    public EmbeddingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer timer(String name, String description, String model, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tag(MODEL_TAG, model)
+                .tags(tags)
+                .register(registry);
+    }
+
+    public Counter counter(String name, String description, String model) {
+        return Counter.builder(name)
+                .description(description)
+                .tag(MODEL_TAG, model)
+                .register(registry);
+    }
+
+    // Times every inference call of the model and records its batch size
+    public EmbeddingModel timed(EmbeddingModel model, String modelName) {
+        DistributionSummary batchSizes = DistributionSummary.builder(EMBED_BATCH_SIZE)
+                .description("Texts per inference call")
+                .tag(MODEL_TAG, modelName)
+                .register(registry);
+        return new TimedEmbeddingModel(model, timer(EMBED, "Inference calls of the embedding model", modelName), batchSizes);
+    }
+
+    // Hits, misses and evictions of the model's persistent segment cache
+    public void monitor(DiskEmbeddingCache cache, String model) {
+        FunctionCounter.builder(DISK_CACHE + ".requests", cache, DiskEmbeddingCache::hits)
+                .description("Persistent embedding cache lookups")
+                .tags(MODEL_TAG, model, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder(DISK_CACHE + ".requests", cache, DiskEmbeddingCache::misses)
+                .description("Persistent embedding cache lookups")
+                .tags(MODEL_TAG, model, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder(DISK_CACHE + ".evictions", cache, DiskEmbeddingCache::evictions)
+                .description("Entries evicted from the persistent embedding cache")
+                .tag(MODEL_TAG, model)
+                .register(registry);
+        Gauge.builder(DISK_CACHE + ".size", cache, DiskEmbeddingCache::size)
+                .description("Entries in the persistent embedding cache")
+                .tag(MODEL_TAG, model)
+                .register(registry);
+    }
+}
@@ -0,0 +1,195 @@
+package com.fusion.service;
+
+import com.fusion.config.EmbeddingModelProperties;
+import com.fusion.store.PooledOnnxEmbeddingModel;
+import com.fusion.utils.ModelFiles;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.OnnxEmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// The embedding models configured under yugabyte.embedding, loaded once at startup. Every model maps to
+// its own table and dimension; the default model is the one stored in yugabyte.table.
+public class EmbeddingModelRegistry implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingModelRegistry.class);
+
+    // Table names end up in SQL, so only plain identifiers are accepted
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    public static final String ALL_MINILM_L6_V2 = "all-minilm-l6-v2";
+
+    public record RegisteredModel(String name, String id, EmbeddingModel model, String table, int dimension) {
+    }
+
+    // Describes a model for clients; the default model serves requests that don't name one
+    public record ModelInfo(String name, String id, String table, int dimension, boolean defaultModel) {
+    }
+
+    private final Map<String, RegisteredModel> models;
+    private final RegisteredModel defaultModel;
+
+    private EmbeddingModelRegistry(Map<String, RegisteredModel> models, String defaultModel) {
+        this.models = models;
+        this.defaultModel = models.get(defaultModel);
+    }
+
+    // Loads every configured model and checks its output width. Without any configured model the
+    // registry holds the bundled all-MiniLM-L6-v2 on the default table, as before models were configurable.
+    public static EmbeddingModelRegistry load(EmbeddingModelProperties properties, String defaultTable, int defaultDimension)
+            throws IOException {
+        Map<String, EmbeddingModelProperties.Model> definitions = new LinkedHashMap<>(properties.getModels());
+        String defaultName = properties.getDefaultModel();
+        if (definitions.isEmpty()) {
+            EmbeddingModelProperties.Model bundled = new EmbeddingModelProperties.Model();
+            bundled.setType(ALL_MINILM_L6_V2);
+            definitions.put(defaultName, bundled);
+        }
+        if (!definitions.containsKey(defaultName)) {
+            throw new IllegalArgumentException("Default embedding model " + defaultName + " is not among the configured models "
+                    + definitions.keySet());
+        }
+
+        Map<String, RegisteredModel> models = new LinkedHashMap<>();
+        Map<String, String> tables = new HashMap<>();
+        for (Map.Entry<String, EmbeddingModelProperties.Model> entry : definitions.entrySet()) {
+            String name = entry.getKey();
+            EmbeddingModelProperties.Model definition = entry.getValue();
+            boolean isDefault = name.equals(defaultName);
+
+            // The default model's table is yugabyte.table, which the store and index beans are built for
+            String table = definition.getTable() != null ? definition.getTable() : isDefault ? defaultTable : null;
+            int dimension = definition.getDimension() > 0 ? definition.getDimension() : isDefault ? defaultDimension : 0;
+            if (table == null || dimension <= 0) {
+                throw new IllegalArgumentException("Embedding model " + name + " needs a table and a dimension");
+            }
+            if (isDefault && (!table.equals(defaultTable) || dimension != defaultDimension)) {
+                throw new IllegalArgumentException("Default embedding model " + name + " must use yugabyte.table ("
+                        + defaultTable + ") and yugabyte.dimension (" + defaultDimension + ")");
+            }
+            if (!TABLE_NAME.matcher(table).matches()) {
+                throw new IllegalArgumentException("Invalid table name for embedding model " + name + ": " + table);
+            }
+            String owner = tables.putIfAbsent(table, name);
+            if (owner != null) {
+                throw new IllegalArgumentException("Embedding models " + owner + " and " + name + " both use table " + table);
+            }
+
+            long start = System.nanoTime();
+            EmbeddingModel model = create(name, definition);
+            int actual = model.embed("dimension check").content().dimension();
+            if (actual != dimension) {
+                throw new IllegalStateException("Embedding model " + name + " produces " + actual
+                        + "-dimension vectors, but " + dimension + " are configured");
+            }
+            String id = definition.getId() != null ? definition.getId()
+                    : ALL_MINILM_L6_V2.equalsIgnoreCase(definition.getType()) ? ALL_MINILM_L6_V2 : name;
+            models.put(name, new RegisteredModel(name, id, model, table, dimension));
+            logger.info("Loaded embedding model {} ({}, {} dimensions, table {}) in {} ms",
+                    name, id, dimension, table, (System.nanoTime() - start) / 1_000_000);
+        }
+        return new EmbeddingModelRegistry(models, defaultName);
+    }
+
+    public RegisteredModel getDefault() {
+        return defaultModel;
+    }
+
+    // The named model, or the default one for a null or blank name
+    public RegisteredModel get(String name) {
+        if (name == null || name.isBlank()) {
+            return defaultModel;
+        }
+        RegisteredModel model = models.get(name.trim());
+        if (model == null) {
+            throw new IllegalArgumentException("Unknown embedding model: " + name + " (expected one of " + models.keySet() + ")");
+        }
+        return model;
+    }
+
+    public Collection<RegisteredModel> getAll() {
+        return models.values();
+    }
+
+    public List<ModelInfo> describe() {
+        List<ModelInfo> infos = new ArrayList<>();
+        for (RegisteredModel model : models.values()) {
+            infos.add(new ModelInfo(model.name(), model.id(), model.table(), model.dimension(), model == defaultModel));
+        }
+        return infos;
+    }
+
+    // Closes the session pools
+    @Override
+    public void close() {
+        for (RegisteredModel model : models.values()) {
+            if (model.model() instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Could not close embedding model {}: {}", model.name(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    // All models run embedAll on the calling thread, so the ingestion engine's workers and the query batcher
+    // are the only inference threads however many models are loaded. ONNX Runtime's environment is process-wide.
+    // With session-pool enabled each call borrows one of the model's sessions, whose thread budget is configured.
+    private static EmbeddingModel create(String name, EmbeddingModelProperties.Model definition) throws IOException {
+        EmbeddingModelProperties.SessionPool pool = definition.getSessionPool();
+        switch (definition.getType().trim().toLowerCase(Locale.ROOT)) {
+            case ALL_MINILM_L6_V2:
+                if (pool != null && pool.isEnabled()) {
+                    return PooledOnnxEmbeddingModel.allMiniLmL6V2(sessionOptions(name, pool));
+                }
+                return new AllMiniLmL6V2EmbeddingModel(Runnable::run);
+            case "onnx":
+                PoolingMode pooling;
+                try {
+                    pooling = PoolingMode.valueOf(definition.getPooling().trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unsupported pooling for embedding model " + name + ": "
+                            + definition.getPooling() + " (expected mean or cls)");
+                }
+                if (pool != null && pool.isEnabled()) {
+                    return new PooledOnnxEmbeddingModel(ModelFiles.resolve(definition.getPath()),
+                            ModelFiles.resolve(definition.getTokenizer()), pooling, sessionOptions(name, pool));
+                }
+                return new OnnxEmbeddingModel(ModelFiles.resolve(definition.getPath()).toString(),
+                        ModelFiles.resolve(definition.getTokenizer()).toString(), pooling, Runnable::run);
+            default:
+                throw new IllegalArgumentException("Unsupported type for embedding model " + name + ": "
+                        + definition.getType() + " (expected " + ALL_MINILM_L6_V2 + " or onnx)");
+        }
+    }
+
+    private static PooledOnnxEmbeddingModel.Options sessionOptions(String name, EmbeddingModelProperties.SessionPool pool) {
+        if (pool.getIntraOpThreads() < 1 || pool.getInterOpThreads() < 1 || pool.getSessions() < 0
+                || pool.getMaxSequenceLength() < 1) {
+            throw new IllegalArgumentException("Invalid session-pool settings for embedding model " + name);
+        }
+        PooledOnnxEmbeddingModel.Options options = new PooledOnnxEmbeddingModel.Options(pool.getSessions(),
+                pool.getIntraOpThreads(), pool.getInterOpThreads(),
+                PooledOnnxEmbeddingModel.optimizationLevel(pool.getOptimizationLevel()), pool.isMemoryArena(),
+                pool.getMaxSequenceLength(), pool.getBatchSize());
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (options.sessionCount() * options.intraOpThreads() > cores) {
+            logger.warn("Embedding model {} uses {} sessions x {} intra-op threads on {} cores; inference threads will contend",
+                    name, options.sessionCount(), options.intraOpThreads(), cores);
+        }
+        return options;
+    }
+}
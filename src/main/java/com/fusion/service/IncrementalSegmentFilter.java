@@ -0,0 +1,131 @@
+package com.fusion.service;
+
+import com.fusion.utils.ContentHashes;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.UUID;
+
+// Passes on only the segments of a re-ingested document that have no row yet. Each segment gets an id derived
+// from the document key and its content hash, so an unchanged segment maps to its existing row; such rows only
+// get their metadata refreshed. When the filter replaces the document, rows no segment maps to are deleted by
+// finish() once the document has been read; otherwise they are kept.
+class IncrementalSegmentFilter implements Iterator<TextSegment> {
+
+    static final String DOCUMENT_KEY = "doc_key";
+    static final String DOCUMENT_HASH = "doc_hash";
+    static final String SEGMENT_HASH = "segment_hash";
+
+    // Left out of segment hashes: positions shift when earlier text changes, the document hash changes with
+    // any edit, and file names differ between uploads of the same file
+    private static final Set<String> UNHASHED_KEYS =
+            Set.of("index", "file_name", "absolute_directory_path", DOCUMENT_HASH, SEGMENT_HASH);
+
+    private static final int METADATA_BATCH_SIZE = 1000;
+
+    private final Iterator<TextSegment> source;
+    private final String modelId;
+    private final String documentKey;
+    private final String documentHash;
+    private final YugabyteEmbeddingRepository repository;
+    // Existing rows of the document that no segment has mapped to yet
+    private final Set<UUID> unclaimed;
+    private final boolean deleteUnclaimed;
+
+    private final Map<String, Integer> occurrences = new HashMap<>();
+    // Ids of the segments handed out, until their batch is written; looked up from the engine's workers
+    private final Map<TextSegment, UUID> ids = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<UUID, Metadata> metadataUpdates = new LinkedHashMap<>();
+    private TextSegment next;
+    private int segments;
+    private int unchanged;
+
+    IncrementalSegmentFilter(Iterator<TextSegment> source, String modelId, String documentKey, String documentHash,
+                             Set<UUID> existingIds, boolean deleteUnclaimed, YugabyteEmbeddingRepository repository) {
+        this.source = source;
+        this.modelId = modelId;
+        this.documentKey = documentKey;
+        this.documentHash = documentHash;
+        this.unclaimed = existingIds;
+        this.deleteUnclaimed = deleteUnclaimed;
+        this.repository = repository;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && source.hasNext()) {
+            TextSegment segment = source.next();
+            String segmentHash = ContentHashes.segmentHash(modelId, segment, UNHASHED_KEYS);
+            // Repeated text, e.g. a running header, gets one row per occurrence
+            int occurrence = occurrences.merge(segmentHash, 1, Integer::sum) - 1;
+            UUID id = ContentHashes.segmentId(documentKey, segmentHash, occurrence);
+            Metadata metadata = segment.metadata().copy()
+                    .put(DOCUMENT_KEY, documentKey)
+                    .put(DOCUMENT_HASH, documentHash)
+                    .put(SEGMENT_HASH, segmentHash);
+            segments++;
+
+            if (unclaimed.remove(id)) {
+                unchanged++;
+                metadataUpdates.put(id, metadata);
+                if (metadataUpdates.size() >= METADATA_BATCH_SIZE) {
+                    flushMetadata();
+                }
+            } else {
+                next = TextSegment.from(segment.text(), metadata);
+                ids.put(next, id);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public TextSegment next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        TextSegment segment = next;
+        next = null;
+        return segment;
+    }
+
+    // Row ids of a batch of segments returned by next()
+    List<UUID> takeIds(List<TextSegment> batch) {
+        List<UUID> batchIds = new ArrayList<>(batch.size());
+        for (TextSegment segment : batch) {
+            batchIds.add(ids.remove(segment));
+        }
+        return batchIds;
+    }
+
+    // Call once every segment has been read and written
+    Result finish() throws SQLException {
+        repository.updateMetadata(metadataUpdates);
+        metadataUpdates.clear();
+        int deleted = deleteUnclaimed ? repository.deleteIds(unclaimed) : 0;
+        return new Result(segments, segments - unchanged, unchanged, deleted);
+    }
+
+    private void flushMetadata() {
+        try {
+            repository.updateMetadata(metadataUpdates);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not update metadata of unchanged segments of " + documentKey, e);
+        }
+        metadataUpdates.clear();
+    }
+
+    record Result(int segments, int embedded, int unchanged, int deleted) {
+    }
+}
@@ -0,0 +1,97 @@
+package com.fusion.service;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Tracks the progress of one asynchronous document ingestion
+public class IngestionJob implements IngestionListener {
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private final String id;
+    private final String fileName;
+    private final Map<String, String> metadata;
+    private final Instant submittedAt = Instant.now();
+    private final AtomicInteger segmentsDone = new AtomicInteger();
+
+    private volatile State state = State.QUEUED;
+    private volatile int segmentsTotal = -1;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String failureCause;
+
+    IngestionJob(String id, String fileName, Map<String, String> metadata) {
+        this.id = id;
+        this.fileName = fileName;
+        this.metadata = metadata;
+    }
+
+    @Override
+    public void onSegmentsSplit(int totalSegments) {
+        this.segmentsTotal = totalSegments;
+    }
+
+    @Override
+    public void onBatchStored(int segments) {
+        segmentsDone.addAndGet(segments);
+    }
+
+    void markRunning() {
+        startedAt = Instant.now();
+        state = State.RUNNING;
+    }
+
+    void markSucceeded() {
+        finishedAt = Instant.now();
+        state = State.SUCCEEDED;
+    }
+
+    void markFailed(Throwable cause) {
+        finishedAt = Instant.now();
+        failureCause = cause.getClass().getSimpleName() + ": " + cause.getMessage();
+        state = State.FAILED;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Map<String, String> getMetadata() {
+        return metadata;
+    }
+
+    public boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    // Point-in-time view of the job that is safe to serialize
+    public Status status() {
+        Instant started = startedAt;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        int done = segmentsDone.get();
+        double segmentsPerSecond = 0.0;
+        if (started != null) {
+            long elapsedMillis = end.toEpochMilli() - started.toEpochMilli();
+            segmentsPerSecond = elapsedMillis > 0 ? done * 1000.0 / elapsedMillis : 0.0;
+        }
+        return new Status(id, state, fileName, done, segmentsTotal, segmentsPerSecond,
+                submittedAt, started, finishedAt, failureCause);
+    }
+
+    public record Status(String jobId,
+                         State state,
+                         String fileName,
+                         int segmentsDone,
+                         int segmentsTotal,
+                         double segmentsPerSecond,
+                         Instant submittedAt,
+                         Instant startedAt,
+                         Instant finishedAt,
+                         String failureCause) {
+    }
+}
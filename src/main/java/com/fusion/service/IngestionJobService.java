@@ -0,0 +1,107 @@
+package com.fusion.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Runs document ingestion in the background on a bounded pool with a bounded queue
+@Service
+public class IngestionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private final YugabyteEmbeddingService embeddingService;
+    private final ThreadPoolExecutor jobWorkers;
+    private final int retainedJobs;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestionJobService(
+            YugabyteEmbeddingService embeddingService,
+            @Value("${yugabyte.ingest.jobs.workers:2}") int workers,
+            @Value("${yugabyte.ingest.jobs.queue-depth:8}") int queueDepth,
+            @Value("${yugabyte.ingest.jobs.retained:100}") int retainedJobs) {
+
+        this.embeddingService = embeddingService;
+        this.retainedJobs = retainedJobs;
+        // AbortPolicy rejects submissions once the queue is full, which callers surface as backpressure
+        this.jobWorkers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueDepth), EmbeddingIngestionEngine.namedThreads("ingestion-job"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        logger.info("Initialized IngestionJobService with workers: {}, queueDepth: {}", workers, queueDepth);
+    }
+
+    // Queues ingestion of an already spooled file into the named model's table (null for the default model);
+    // the job owns the file and deletes it when done. With replace, rows of a previous version are deleted.
+    public IngestionJob.Status submit(Path spooledFile, String fileName, String model, Map<String, String> metadata,
+                                      boolean replace) {
+        // Resolved up front, so an unknown model is rejected rather than failing the job
+        YugabyteEmbeddingService service = embeddingService.forModel(model);
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), fileName, metadata);
+        pruneFinishedJobs();
+        jobs.put(job.getId(), job);
+        try {
+            jobWorkers.execute(() -> run(job, service, spooledFile, fileName, replace));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        logger.info("Queued ingestion job {} for file: {} (model {})", job.getId(), fileName, service.getModelName());
+        return job.status();
+    }
+
+    public Optional<IngestionJob.Status> getStatus(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(IngestionJob::status);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobWorkers.shutdownNow();
+    }
+
+    private void run(IngestionJob job, YugabyteEmbeddingService service, Path spooledFile, String fileName, boolean replace) {
+        job.markRunning();
+        try {
+            service.ingestDocument(spooledFile.toString(), fileName, job.getMetadata(), replace, job);
+            job.markSucceeded();
+            logger.info("Ingestion job {} completed.", job.getId());
+        } catch (Exception e) {
+            job.markFailed(e);
+            logger.error("Ingestion job {} failed", job.getId(), e);
+        } finally {
+            try {
+                Files.deleteIfExists(spooledFile);
+            } catch (IOException e) {
+                logger.warn("Could not delete spooled file {}: {}", spooledFile, e.getMessage());
+            }
+        }
+    }
+
+    // Keeps at most retainedJobs finished jobs, dropping the oldest first
+    private void pruneFinishedJobs() {
+        long finished = jobs.values().stream().filter(IngestionJob::isFinished).count();
+        if (finished < retainedJobs) {
+            return;
+        }
+        jobs.values().stream()
+                .filter(IngestionJob::isFinished)
+                .sorted(Comparator.comparing(IngestionJob::getFinishedAt))
+                .limit(finished - retainedJobs + 1)
+                .forEach(job -> jobs.remove(job.getId()));
+    }
+}
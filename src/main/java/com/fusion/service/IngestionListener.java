@@ -0,0 +1,16 @@
+package com.fusion.service;
+
+// Receives progress callbacks while a document is being ingested
+public interface IngestionListener {
+
+    IngestionListener NONE = new IngestionListener() {
+    };
+
+    // Called once the document has been split, with the number of segments to embed
+    default void onSegmentsSplit(int totalSegments) {
+    }
+
+    // Called from an ingestion worker each time a batch has been embedded and stored
+    default void onBatchStored(int segments) {
+    }
+}
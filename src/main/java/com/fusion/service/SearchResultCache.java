@@ -0,0 +1,85 @@
+package com.fusion.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Caches whole search results of every model. Every write to a corpus bumps a generation counter that is part
+// of the key, so results computed before a write can never be served after it.
+@Component
+public class SearchResultCache implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(SearchResultCache.class);
+
+    private final Cache<Key, List<String>> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SearchResultCache(
+            @Value("${yugabyte.cache.search.max-size:10000}") long maxSize,
+            @Value("${yugabyte.cache.search.ttl:10m}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        logger.info("Initialized SearchResultCache with maxSize: {}, ttl: {}", maxSize, ttl);
+    }
+
+    // Read before running a search and pass to put(), so a write that lands mid-search discards its result
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    public List<String> get(String model, String query, Map<String, String> metadataFilter, int maxResults, SearchTuning tuning) {
+        return cache.getIfPresent(key(model, query, metadataFilter, maxResults, tuning, generation.get()));
+    }
+
+    public void put(String model, String query, Map<String, String> metadataFilter, int maxResults, SearchTuning tuning,
+                    long searchGeneration, List<String> results) {
+        if (searchGeneration == generation.get()) {
+            cache.put(key(model, query, metadataFilter, maxResults, tuning, searchGeneration), List.copyOf(results));
+        }
+    }
+
+    // Called by every write path once its changes are visible. Writes are rare next to searches,
+    // so one generation for all models is simpler than tracking them per table.
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    // Hit, miss, eviction and size meters, bound by the actuator's meter registry
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "rag.cache.search");
+    }
+
+    public CacheStatistics stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(), stats.evictionCount());
+    }
+
+    // Results depend on the ANN settings too, since a smaller beam can miss matches
+    private static Key key(String model, String query, Map<String, String> metadataFilter, int maxResults,
+                           SearchTuning tuning, long generation) {
+        // Not Map.copyOf, which throws on the null values a JSON filter can carry
+        Map<String, String> filter = metadataFilter == null ? Map.of() : new HashMap<>(metadataFilter);
+        return new Key(model, EmbeddingCache.normalize(query), filter, maxResults, tuning, generation);
+    }
+
+    record Key(String model, String query, Map<String, String> metadataFilter, int maxResults, SearchTuning tuning, long generation) {
+    }
+}
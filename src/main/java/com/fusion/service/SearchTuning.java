@@ -0,0 +1,22 @@
+package com.fusion.service;
+
+// Per-request ANN search settings; null fields fall back to the configured defaults
+public record SearchTuning(Integer efSearch, Integer probes) {
+
+    public static final SearchTuning DEFAULT = new SearchTuning(null, null);
+
+    public SearchTuning {
+        if (efSearch != null && efSearch <= 0) {
+            throw new IllegalArgumentException("efSearch must be positive: " + efSearch);
+        }
+        if (probes != null && probes <= 0) {
+            throw new IllegalArgumentException("probes must be positive: " + probes);
+        }
+    }
+
+    // Fills unset fields from the defaults
+    public SearchTuning orElse(SearchTuning defaults) {
+        return new SearchTuning(efSearch != null ? efSearch : defaults.efSearch(),
+                probes != null ? probes : defaults.probes());
+    }
+}
@@ -0,0 +1,52 @@
+package com.fusion.service;
+
+import java.util.Locale;
+
+// Distance function an ANN index is built for; searches must order by the same operator to use it
+public enum VectorDistance {
+
+    COSINE("<=>", "cosine_ops"),
+    L2("<->", "l2_ops"),
+    INNER_PRODUCT("<#>", "ip_ops");
+
+    private final String operator;
+    private final String opsSuffix;
+
+    VectorDistance(String operator, String opsSuffix) {
+        this.operator = operator;
+        this.opsSuffix = opsSuffix;
+    }
+
+    public static VectorDistance fromConfig(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported yugabyte.index.distance: " + value
+                    + " (expected one of cosine, l2, inner-product)");
+        }
+    }
+
+    public String operator() {
+        return operator;
+    }
+
+    // Relevance score of a distance returned by operator(), on PgVectorEmbeddingStore's cosine scale (1 + cos) / 2.
+    // For unit vectors, which the embedding models produce, all three give the same score.
+    public double score(double distance) {
+        switch (this) {
+            case L2:
+                // |a - b|^2 = 2 - 2 cos
+                return 1 - distance * distance / 4;
+            case INNER_PRODUCT:
+                // <#> is the negative inner product
+                return (1 - distance) / 2;
+            default:
+                return (2 - distance) / 2;
+        }
+    }
+
+    // Operator class for a column of the given pgvector type, e.g. vector_cosine_ops or halfvec_l2_ops
+    public String operatorClass(String columnType) {
+        return columnType + "_" + opsSuffix;
+    }
+}
@@ -0,0 +1,275 @@
+package com.fusion.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Creates and maintains the ANN index on the embeddings table and supplies the matching per-query settings.
+// Builds run CONCURRENTLY on a background thread so writes and searches continue meanwhile.
+@Component
+public class VectorIndexManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(VectorIndexManager.class);
+
+    // pgvector rejects hnsw.ef_search values above this
+    private static final int MAX_EF_SEARCH = 1000;
+
+    public enum Type {
+        NONE, HNSW, IVFFLAT;
+
+        public static Type fromConfig(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported yugabyte.index.type: " + value
+                        + " (expected one of none, hnsw, ivfflat)");
+            }
+        }
+    }
+
+    private final String table;
+    private final String schema;
+    private final String indexName;
+    private final Type type;
+    private final VectorDistance distance;
+    private final String accessMethod;
+    private final int m;
+    private final int efConstruction;
+    private final int lists;
+    private final SearchTuning defaultTuning;
+    private final int deferThreshold;
+
+    // One build at a time across all tables
+    private final ExecutorService builder;
+    private volatile boolean building;
+
+    public VectorIndexManager(
+            @Value("${yugabyte.table}") String table,
+            @Value("${yugabyte.index.type:hnsw}") String type,
+            @Value("${yugabyte.index.distance:cosine}") String distance,
+            @Value("${yugabyte.index.access-method:}") String accessMethod,
+            @Value("${yugabyte.index.hnsw.m:16}") int m,
+            @Value("${yugabyte.index.hnsw.ef-construction:64}") int efConstruction,
+            @Value("${yugabyte.index.hnsw.ef-search:40}") int efSearch,
+            @Value("${yugabyte.index.ivfflat.lists:100}") int lists,
+            @Value("${yugabyte.index.ivfflat.probes:10}") int probes,
+            @Value("${yugabyte.index.defer-threshold:5000}") int deferThreshold) {
+        this.table = "ragschema." + table;
+        this.schema = "ragschema";
+        this.indexName = table + "_ann_idx";
+        this.type = Type.fromConfig(type);
+        this.distance = VectorDistance.fromConfig(distance);
+        // Empty means the pgvector access method of the same name; YugabyteDB calls its HNSW implementation ybhnsw
+        this.accessMethod = accessMethod.isBlank() ? this.type.name().toLowerCase(Locale.ROOT) : accessMethod.trim();
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.lists = lists;
+        this.defaultTuning = new SearchTuning(efSearch, probes);
+        this.deferThreshold = deferThreshold;
+        this.builder = Executors.newSingleThreadExecutor(EmbeddingIngestionEngine.namedThreads("vector-index-build"));
+
+        logger.info("Initialized VectorIndexManager with type: {}, distance: {}, accessMethod: {}",
+                this.type, this.distance, this.accessMethod);
+    }
+
+    private VectorIndexManager(VectorIndexManager settings, String table) {
+        this.table = "ragschema." + table;
+        this.schema = settings.schema;
+        this.indexName = table + "_ann_idx";
+        this.type = settings.type;
+        this.distance = settings.distance;
+        this.accessMethod = settings.accessMethod;
+        this.m = settings.m;
+        this.efConstruction = settings.efConstruction;
+        this.lists = settings.lists;
+        this.defaultTuning = settings.defaultTuning;
+        this.deferThreshold = settings.deferThreshold;
+        this.builder = settings.builder;
+    }
+
+    // The same index settings for another model's table, sharing this manager's build thread
+    public VectorIndexManager forTable(String table) {
+        return new VectorIndexManager(this, table);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public VectorDistance getDistance() {
+        return distance;
+    }
+
+    // Loads of at least this many segments into an empty table drop the index first and rebuild it afterwards.
+    // A table with rows keeps its index, since other clients search it while one document is ingested.
+    public boolean shouldDeferIndex(int segments, YugabyteEmbeddingRepository repository) throws SQLException {
+        return type != Type.NONE && segments >= deferThreshold && repository.isEmpty();
+    }
+
+    // Session settings for one search whose index scan must yield at least limit rows
+    public Map<String, Integer> searchSettings(SearchTuning tuning, int limit) {
+        SearchTuning effective = tuning.orElse(defaultTuning);
+        Map<String, Integer> settings = new LinkedHashMap<>();
+        if (type == Type.HNSW) {
+            // An HNSW scan returns at most ef_search rows, so it must cover the LIMIT
+            settings.put(accessMethod + ".ef_search", Math.min(Math.max(effective.efSearch(), limit), MAX_EF_SEARCH));
+        } else if (type == Type.IVFFLAT) {
+            settings.put(accessMethod + ".probes", Math.min(effective.probes(), lists));
+        }
+        return settings;
+    }
+
+    // Builds the index for the current storage layout in the background, replacing an index that is
+    // invalid (e.g. an interrupted concurrent build) or was built with different settings
+    public CompletableFuture<IndexState> ensureIndexAsync(YugabyteEmbeddingRepository.StorageState storage) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return ensureIndex(storage);
+            } catch (SQLException e) {
+                logger.error("Building index {} on {} failed", indexName, table, e);
+                throw new CompletionException(e);
+            }
+        }, builder);
+    }
+
+    public CompletableFuture<IndexState> rebuildAsync(YugabyteEmbeddingRepository.StorageState storage) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                dropIndex();
+                return ensureIndex(storage);
+            } catch (SQLException e) {
+                logger.error("Rebuilding index {} on {} failed", indexName, table, e);
+                throw new CompletionException(e);
+            }
+        }, builder);
+    }
+
+    // Only runs on the build thread, which serializes builds; the DDL is not run under a lock, so ingests and
+    // describe() don't wait for a build
+    IndexState ensureIndex(YugabyteEmbeddingRepository.StorageState storage) throws SQLException {
+        IndexState current = describe();
+        if (type == Type.NONE) {
+            if (current.exists()) {
+                dropIndex();
+            }
+            return describe();
+        }
+        if (current.exists() && current.valid() && matchesDefinition(current.definition(), storage)) {
+            return current;
+        }
+        if (current.exists()) {
+            logger.info("Replacing index {}: {}", indexName, current.valid() ? current.definition() : "invalid");
+            dropIndex();
+        }
+
+        String sql = "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + indexName + " ON " + table
+                + " USING " + accessMethod + " (" + column(storage) + " " + operatorClass(storage) + ")"
+                + " WITH (" + String.join(", ", parameters()) + ")";
+        long start = System.nanoTime();
+        building = true;
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            // CONCURRENTLY cannot run inside a transaction block
+            connection.setAutoCommit(true);
+            logger.info("Building index: {}", sql);
+            statement.execute(sql);
+        } finally {
+            building = false;
+        }
+        logger.info("Index {} built in {} ms", indexName, (System.nanoTime() - start) / 1_000_000);
+        return describe();
+    }
+
+    public void dropIndex() throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(true);
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + schema + "." + indexName);
+            logger.info("Dropped index {} on {}", indexName, table);
+        }
+    }
+
+    public IndexState describe() throws SQLException {
+        String sql = "SELECT i.indisvalid, pg_get_indexdef(i.indexrelid), pg_relation_size(i.indexrelid)"
+                + " FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid JOIN pg_namespace n ON n.oid = c.relnamespace"
+                + " WHERE c.relname = ? AND n.nspname = ?";
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, indexName);
+            statement.setString(2, schema);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return new IndexState(indexName, type, distance, true, resultSet.getBoolean(1), building,
+                            resultSet.getString(2), resultSet.getLong(3));
+                }
+                return new IndexState(indexName, type, distance, false, false, building, null, 0L);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        builder.shutdownNow();
+    }
+
+    private boolean matchesDefinition(String definition, YugabyteEmbeddingRepository.StorageState storage) {
+        if (!definition.contains("USING " + accessMethod + " (" + column(storage) + " " + operatorClass(storage) + ")")) {
+            return false;
+        }
+        // pg_get_indexdef renders storage parameters as name='value'
+        for (String parameter : parameters()) {
+            String[] parts = parameter.split(" = ");
+            if (!definition.contains(parts[0] + "='" + parts[1] + "'")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<String> parameters() {
+        List<String> parameters = new ArrayList<>();
+        if (type == Type.HNSW) {
+            parameters.add("m = " + m);
+            parameters.add("ef_construction = " + efConstruction);
+        } else {
+            parameters.add("lists = " + lists);
+        }
+        return parameters;
+    }
+
+    private static String column(YugabyteEmbeddingRepository.StorageState storage) {
+        return storage.mode() == VectorStorageMode.FULL ? "embedding" : YugabyteEmbeddingRepository.COMPACT_EMBEDDING_COLUMN;
+    }
+
+    private String operatorClass(YugabyteEmbeddingRepository.StorageState storage) {
+        switch (storage.mode()) {
+            case HALFVEC:
+                return distance.operatorClass("halfvec");
+            case BINARY:
+                return "bit_hamming_ops";
+            default:
+                return distance.operatorClass("vector");
+        }
+    }
+
+    public record IndexState(String name, Type type, VectorDistance distance, boolean exists, boolean valid,
+                             boolean building, String definition, long sizeBytes) {
+    }
+}
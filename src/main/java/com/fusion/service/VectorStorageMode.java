@@ -0,0 +1,63 @@
+package com.fusion.service;
+
+import java.util.Locale;
+
+// How the candidate-search copy of each embedding is stored next to the full float32 vector
+public enum VectorStorageMode {
+
+    // Only the float32 vector column written by PgVectorEmbeddingStore
+    FULL,
+
+    // IEEE half precision (pgvector halfvec), half the size of float32
+    HALFVEC,
+
+    // One sign bit per dimension (pgvector binary_quantize), compared by Hamming distance
+    BINARY;
+
+    public static VectorStorageMode fromConfig(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported yugabyte.storage.mode: " + value
+                    + " (expected one of full, halfvec, binary)");
+        }
+    }
+
+    public String columnType(int dimension) {
+        switch (this) {
+            case HALFVEC:
+                return "halfvec(" + dimension + ")";
+            case BINARY:
+                return "bit(" + dimension + ")";
+            default:
+                return "vector(" + dimension + ")";
+        }
+    }
+
+    // SQL expression converting a full-precision vector expression to this representation
+    public String compactExpression(String vectorExpression, int dimension) {
+        switch (this) {
+            case HALFVEC:
+                return "(" + vectorExpression + ")::halfvec(" + dimension + ")";
+            case BINARY:
+                return "binary_quantize(" + vectorExpression + ")::bit(" + dimension + ")";
+            default:
+                return vectorExpression;
+        }
+    }
+
+    // Binary codes are always compared by Hamming distance
+    public String distanceOperator(VectorDistance distance) {
+        return this == BINARY ? "<~>" : distance.operator();
+    }
+
+    // Binary codes only rank candidates; they need the full vectors to produce a usable score
+    public boolean requiresFullVectors() {
+        return this == BINARY;
+    }
+
+    // Whether the full vectors stay next to the compressed copy: always when this mode needs them, otherwise as requested
+    public boolean keepsFullVectors(boolean requested) {
+        return this == FULL || requiresFullVectors() || requested;
+    }
+}
@@ -0,0 +1,563 @@
+package com.fusion.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pgvector.PGvector;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+// Direct SQL access to the pgvector table written by PgVectorEmbeddingStore
+public class YugabyteEmbeddingRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(YugabyteEmbeddingRepository.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    // Secondary column holding the reduced-dimension projection of each embedding
+    public static final String SHORT_EMBEDDING_COLUMN = "embedding_short";
+
+    // Secondary column holding the compressed copy of each embedding used for candidate search
+    public static final String COMPACT_EMBEDDING_COLUMN = "embedding_compact";
+
+    // Rows converted per statement when migrating, so no single transaction touches the whole table
+    private static final int COMPACTION_BATCH_SIZE = 5000;
+
+    private final String table;
+    private final String tableName;
+    // Records the storage mode of every embeddings table in the same schema
+    private final String storageModeTable;
+    // Content hash of every document ingested into the table, for skipping unchanged re-ingests
+    private final String documentTable;
+    // Ordering operator of nearest-neighbour queries; it must match the ANN index to use it
+    private final VectorDistance distance;
+
+    // table may be schema-qualified, e.g. ragschema.document_embeddings
+    public YugabyteEmbeddingRepository(String table) {
+        this(table, VectorDistance.COSINE);
+    }
+
+    public YugabyteEmbeddingRepository(String table, VectorDistance distance) {
+        this.table = table;
+        this.distance = distance;
+        this.tableName = table.substring(table.lastIndexOf('.') + 1);
+        this.storageModeTable = table.substring(0, table.lastIndexOf('.') + 1) + "embedding_storage_modes";
+        this.documentTable = table + "_documents";
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    // GIN index over the metadata so JSONB containment filters don't scan the whole table
+    public void ensureMetadataIndex() throws SQLException {
+        String sql = "CREATE INDEX IF NOT EXISTS " + tableName + "_metadata_idx ON " + table
+                + " USING gin ((metadata::jsonb) jsonb_path_ops)";
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+            logger.info("Metadata index ensured on table: {}", table);
+        }
+    }
+
+    // Nearest neighbours, restricted to rows whose metadata contains every filter entry.
+    // sessionSettings (e.g. hnsw.ef_search) apply to this query only; filtered searches don't use the ANN index.
+    public List<EmbeddingMatch<TextSegment>> search(Embedding queryEmbedding,
+                                                    Map<String, String> metadataFilter,
+                                                    int maxResults,
+                                                    Map<String, Integer> sessionSettings) throws SQLException {
+        boolean filtered = metadataFilter != null && !metadataFilter.isEmpty();
+
+        StringBuilder sql = new StringBuilder("SELECT embedding_id, text, metadata, embedding ").append(distance.operator())
+                .append(" ? AS distance FROM ").append(filtered ? filteredRows() : table);
+        sql.append(" ORDER BY embedding ").append(distance.operator()).append(" ? LIMIT ?");
+
+        PGvector vector = new PGvector(queryEmbedding.vector());
+        return runSearch(sql.toString(), filtered ? Map.of() : sessionSettings, statement -> {
+            int index = 1;
+            statement.setObject(index++, vector);
+            if (filtered) {
+                statement.setString(index++, toJson(metadataFilter));
+            }
+            statement.setObject(index++, vector);
+            statement.setInt(index, maxResults);
+        });
+    }
+
+    // Coarse pass over the reduced vectors, then rescoring of the candidates with the full vectors, in one query
+    public List<EmbeddingMatch<TextSegment>> searchTwoStage(Embedding queryEmbedding,
+                                                            float[] shortQueryEmbedding,
+                                                            Map<String, String> metadataFilter,
+                                                            int candidates,
+                                                            int maxResults) throws SQLException {
+        boolean filtered = metadataFilter != null && !metadataFilter.isEmpty();
+
+        StringBuilder sql = new StringBuilder("SELECT embedding_id, text, metadata, embedding ").append(distance.operator())
+                .append(" ? AS distance FROM ").append("(SELECT embedding_id, text, metadata, embedding FROM ").append(table)
+                .append(" WHERE ").append(SHORT_EMBEDDING_COLUMN).append(" IS NOT NULL");
+        if (filtered) {
+            sql.append(" AND metadata::jsonb @> ?::jsonb");
+        }
+        sql.append(" ORDER BY ").append(SHORT_EMBEDDING_COLUMN).append(' ').append(distance.operator()).append(" ? LIMIT ?) candidates")
+                .append(" ORDER BY distance LIMIT ?");
+
+        return runSearch(sql.toString(), Map.of(), statement -> {
+            int index = 1;
+            statement.setObject(index++, new PGvector(queryEmbedding.vector()));
+            if (filtered) {
+                statement.setString(index++, toJson(metadataFilter));
+            }
+            statement.setObject(index++, new PGvector(shortQueryEmbedding));
+            statement.setInt(index++, candidates);
+            statement.setInt(index, maxResults);
+        });
+    }
+
+    // Candidates ranked on the compressed column, rescored with the full vectors when they are kept
+    public List<EmbeddingMatch<TextSegment>> searchCompact(Embedding queryEmbedding,
+                                                           VectorStorageMode mode,
+                                                           boolean rescore,
+                                                           Map<String, String> metadataFilter,
+                                                           int candidates,
+                                                           int maxResults,
+                                                           Map<String, Integer> sessionSettings) throws SQLException {
+        boolean filtered = metadataFilter != null && !metadataFilter.isEmpty();
+        int dimension = queryEmbedding.dimension();
+        String score = rescore
+                ? "embedding " + distance.operator() + " ?"
+                : COMPACT_EMBEDDING_COLUMN + " " + mode.distanceOperator(distance) + " " + mode.compactExpression("?::vector", dimension);
+
+        StringBuilder sql = new StringBuilder("SELECT embedding_id, text, metadata, ").append(score).append(" AS distance FROM ")
+                .append("(SELECT embedding_id, text, metadata, embedding, ").append(COMPACT_EMBEDDING_COLUMN).append(" FROM ")
+                .append(filtered ? filteredRows() : table)
+                .append(" WHERE ").append(COMPACT_EMBEDDING_COLUMN).append(" IS NOT NULL");
+        sql.append(" ORDER BY ").append(COMPACT_EMBEDDING_COLUMN).append(' ').append(mode.distanceOperator(distance)).append(' ')
+                .append(mode.compactExpression("?::vector", dimension)).append(" LIMIT ?) candidates")
+                .append(" ORDER BY distance LIMIT ?");
+
+        PGvector vector = new PGvector(queryEmbedding.vector());
+        return runSearch(sql.toString(), filtered ? Map.of() : sessionSettings, statement -> {
+            int index = 1;
+            statement.setObject(index++, vector);
+            if (filtered) {
+                statement.setString(index++, toJson(metadataFilter));
+            }
+            statement.setObject(index++, vector);
+            statement.setInt(index++, candidates);
+            statement.setInt(index, maxResults);
+        });
+    }
+
+    // Rows matching a metadata filter (one parameter), found through the GIN index. pgvector applies a WHERE clause
+    // to the ef_search rows an HNSW scan yields, so a selective filter would come back with fewer than the requested
+    // matches; OFFSET 0 keeps the planner from ordering the filtered rows by the ANN index, so they are ranked exactly.
+    private String filteredRows() {
+        return "(SELECT * FROM " + table + " WHERE metadata::jsonb @> ?::jsonb OFFSET 0) filtered_rows";
+    }
+
+    // SET LOCAL only lasts for a transaction, so searches with session settings run in one
+    private List<EmbeddingMatch<TextSegment>> runSearch(String sql,
+                                                        Map<String, Integer> sessionSettings,
+                                                        ParameterBinder binder) throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection()) {
+            boolean transactional = !sessionSettings.isEmpty();
+            if (transactional) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                if (transactional) {
+                    try (Statement statement = connection.createStatement()) {
+                        for (Map.Entry<String, Integer> setting : sessionSettings.entrySet()) {
+                            statement.execute("SET LOCAL " + setting.getKey() + " = " + setting.getValue());
+                        }
+                    }
+                }
+                try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                    binder.bind(statement);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        return readMatches(resultSet);
+                    }
+                }
+            } finally {
+                if (transactional) {
+                    // Read-only, so ending the transaction either way just discards the settings
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ParameterBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    public StorageState getStorageState() throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection()) {
+            return readStorageState(connection);
+        }
+    }
+
+    // Brings the table to the requested mode, converting existing rows in batches.
+    // Full vectors that were discarded earlier cannot be recovered, so such a migration is refused.
+    public StorageState migrateStorage(VectorStorageMode mode, boolean keepFullVectors, int dimension) throws SQLException {
+        if (!keepFullVectors && (mode == VectorStorageMode.FULL || mode.requiresFullVectors())) {
+            throw new IllegalArgumentException("Storage mode " + mode + " needs the full vectors to be kept");
+        }
+        StorageState target = new StorageState(mode, keepFullVectors);
+
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            StorageState current = readStorageState(connection);
+            if (!current.equals(target)) {
+                if (!current.keepFullVectors()) {
+                    throw new IllegalStateException("Table " + table + " only holds " + current.mode()
+                            + " vectors; re-ingest the documents to switch to " + mode);
+                }
+                logger.info("Migrating table {} from {} to {}", table, current, target);
+                statement.execute("ALTER TABLE " + table + " DROP COLUMN IF EXISTS " + COMPACT_EMBEDDING_COLUMN);
+                if (mode != VectorStorageMode.FULL) {
+                    statement.execute("ALTER TABLE " + table + " ADD COLUMN " + COMPACT_EMBEDDING_COLUMN + " " + mode.columnType(dimension));
+                }
+            } else if (mode != VectorStorageMode.FULL) {
+                statement.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + COMPACT_EMBEDDING_COLUMN + " " + mode.columnType(dimension));
+            }
+        }
+
+        // Convert before recording the new mode, so an interrupted migration is simply resumed on the next start.
+        // The full vectors are only dropped once every row is known to have its compressed copy.
+        if (mode != VectorStorageMode.FULL) {
+            compactNewRows(new StorageState(mode, true), dimension);
+            if (!keepFullVectors) {
+                long missing = countUncompacted();
+                if (missing > 0) {
+                    throw new IllegalStateException(missing + " rows of " + table + " have no " + mode
+                            + " vector; keeping the full vectors");
+                }
+                dropFullVectors();
+            }
+        }
+        writeStorageState(target);
+        return target;
+    }
+
+    private long countUncompacted() throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM " + table
+                     + " WHERE " + COMPACT_EMBEDDING_COLUMN + " IS NULL AND embedding IS NOT NULL")) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private void dropFullVectors() throws SQLException {
+        String sql = "UPDATE " + table + " SET embedding = NULL WHERE embedding_id IN (SELECT embedding_id FROM " + table
+                + " WHERE embedding IS NOT NULL AND " + COMPACT_EMBEDDING_COLUMN + " IS NOT NULL LIMIT " + COMPACTION_BATCH_SIZE + ")";
+        int dropped = 0;
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            int updated;
+            do {
+                updated = statement.executeUpdate(sql);
+                dropped += updated;
+            } while (updated == COMPACTION_BATCH_SIZE);
+        }
+        logger.info("Dropped the full vectors of {} rows of table {}", dropped, table);
+    }
+
+    // Fills in the compressed vector of rows that don't have one yet, discarding the full vector if configured;
+    // returns the number of rows converted. The conversion runs entirely inside the database.
+    public int compactNewRows(StorageState state, int dimension) throws SQLException {
+        if (state.mode() == VectorStorageMode.FULL) {
+            return 0;
+        }
+        String sql = "UPDATE " + table + " SET " + COMPACT_EMBEDDING_COLUMN + " = " + state.mode().compactExpression("embedding", dimension)
+                + (state.keepFullVectors() ? "" : ", embedding = NULL")
+                + " WHERE embedding_id IN (SELECT embedding_id FROM " + table
+                + " WHERE " + COMPACT_EMBEDDING_COLUMN + " IS NULL AND embedding IS NOT NULL LIMIT " + COMPACTION_BATCH_SIZE + ")";
+        int converted = 0;
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            int updated;
+            do {
+                updated = statement.executeUpdate(sql);
+                converted += updated;
+            } while (updated == COMPACTION_BATCH_SIZE);
+        }
+        if (converted > 0) {
+            logger.info("Converted {} rows of table {} to {} storage", converted, table, state.mode());
+        }
+        return converted;
+    }
+
+    private StorageState readStorageState(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + storageModeTable
+                    + " (table_name TEXT PRIMARY KEY, mode TEXT NOT NULL, keep_full_vectors BOOLEAN NOT NULL)");
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT mode, keep_full_vectors FROM " + storageModeTable + " WHERE table_name = ?")) {
+            statement.setString(1, tableName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                // Tables created before storage modes existed hold full vectors only
+                return resultSet.next()
+                        ? new StorageState(VectorStorageMode.fromConfig(resultSet.getString(1)), resultSet.getBoolean(2))
+                        : new StorageState(VectorStorageMode.FULL, true);
+            }
+        }
+    }
+
+    private void writeStorageState(StorageState state) throws SQLException {
+        String sql = "INSERT INTO " + storageModeTable + " (table_name, mode, keep_full_vectors) VALUES (?, ?, ?)"
+                + " ON CONFLICT (table_name) DO UPDATE SET mode = EXCLUDED.mode, keep_full_vectors = EXCLUDED.keep_full_vectors";
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, tableName);
+            statement.setString(2, state.mode().name());
+            statement.setBoolean(3, state.keepFullVectors());
+            statement.executeUpdate();
+        }
+    }
+
+    public record StorageState(VectorStorageMode mode, boolean keepFullVectors) {
+    }
+
+    // Content hash and row count of each document as of its last complete ingest, keyed by document key
+    public DocumentState getDocumentState(String documentKey) throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection()) {
+            ensureDocumentTable(connection);
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT doc_hash, segments FROM " + documentTable + " WHERE doc_key = ?")) {
+                statement.setString(1, documentKey);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? new DocumentState(documentKey, resultSet.getString(1), resultSet.getInt(2)) : null;
+                }
+            }
+        }
+    }
+
+    public void putDocumentState(DocumentState state) throws SQLException {
+        String sql = "INSERT INTO " + documentTable + " (doc_key, doc_hash, segments, updated_at) VALUES (?, ?, ?, now())"
+                + " ON CONFLICT (doc_key) DO UPDATE SET doc_hash = EXCLUDED.doc_hash, segments = EXCLUDED.segments, updated_at = now()";
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection()) {
+            ensureDocumentTable(connection);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, state.documentKey());
+                statement.setString(2, state.documentHash());
+                statement.setInt(3, state.segments());
+                statement.executeUpdate();
+            }
+        }
+    }
+
+    public record DocumentState(String documentKey, String documentHash, int segments) {
+    }
+
+    public boolean isEmpty() throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT NOT EXISTS (SELECT 1 FROM " + table + ")")) {
+            resultSet.next();
+            return resultSet.getBoolean(1);
+        }
+    }
+
+    // Number of stored rows whose metadata contains every given entry, e.g. a document key and hash
+    public int countRows(Map<String, String> metadata) throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT count(*) FROM " + table + " WHERE metadata::jsonb @> ?::jsonb")) {
+            statement.setString(1, toJson(metadata));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getInt(1);
+            }
+        }
+    }
+
+    // Ids of the rows whose metadata contains every given entry
+    public Set<UUID> findIds(Map<String, String> metadata) throws SQLException {
+        Set<UUID> ids = new HashSet<>();
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT embedding_id FROM " + table + " WHERE metadata::jsonb @> ?::jsonb")) {
+            statement.setString(1, toJson(metadata));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getObject(1, UUID.class));
+                }
+            }
+        }
+        return ids;
+    }
+
+    // Replaces the metadata of existing rows, leaving their text and vectors alone
+    public void updateMetadata(Map<UUID, Metadata> metadata) throws SQLException {
+        if (metadata.isEmpty()) {
+            return;
+        }
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "UPDATE " + table + " SET metadata = ?::json WHERE embedding_id = ?")) {
+            for (Map.Entry<UUID, Metadata> entry : metadata.entrySet()) {
+                statement.setString(1, toJsonObject(entry.getValue().toMap()));
+                statement.setObject(2, entry.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    public int deleteIds(Collection<UUID> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "DELETE FROM " + table + " WHERE embedding_id = ANY (?)")) {
+            statement.setArray(1, connection.createArrayOf("uuid", ids.toArray()));
+            return statement.executeUpdate();
+        }
+    }
+
+    private void ensureDocumentTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + documentTable
+                    + " (doc_key TEXT PRIMARY KEY, doc_hash TEXT NOT NULL, segments INT NOT NULL, updated_at TIMESTAMPTZ NOT NULL)");
+        }
+    }
+
+    // Random sample of stored full-dimension vectors, e.g. for fitting a projection
+    public List<float[]> sampleEmbeddings(int limit) throws SQLException {
+        String sql = "SELECT embedding::text FROM " + table + " WHERE embedding IS NOT NULL ORDER BY random() LIMIT ?";
+        List<float[]> samples = new ArrayList<>();
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    samples.add(new PGvector(resultSet.getString(1)).toArray());
+                }
+            }
+        }
+        return samples;
+    }
+
+    public void ensureShortEmbeddingColumn(int dimension) throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS " + SHORT_EMBEDDING_COLUMN + " vector(" + dimension + ")");
+        }
+    }
+
+    // Replaces the reduced-vector column with an empty one of the given dimension
+    public void resetShortEmbeddingColumn(int dimension) throws SQLException {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " DROP COLUMN IF EXISTS " + SHORT_EMBEDDING_COLUMN);
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN " + SHORT_EMBEDDING_COLUMN + " vector(" + dimension + ")");
+            logger.info("Reset column {} on table {} to dimension {}", SHORT_EMBEDDING_COLUMN, table, dimension);
+        }
+    }
+
+    // Fills in the reduced vector of every row that doesn't have one yet; returns the number of rows updated
+    public int backfillShortEmbeddings(Function<float[], float[]> projector, int batchSize) throws SQLException {
+        String select = "SELECT embedding_id, embedding::text FROM " + table + " WHERE " + SHORT_EMBEDDING_COLUMN + " IS NULL AND embedding IS NOT NULL";
+        String update = "UPDATE " + table + " SET " + SHORT_EMBEDDING_COLUMN + " = ? WHERE embedding_id = ?";
+        int updated = 0;
+
+        try (Connection reader = com.fusion.YugabyteConnectionPool.getConnection();
+             Connection writer = com.fusion.YugabyteConnectionPool.getConnection()) {
+            // Stream rows with a cursor instead of loading the whole table
+            reader.setAutoCommit(false);
+            try (PreparedStatement query = reader.prepareStatement(select);
+                 PreparedStatement statement = writer.prepareStatement(update)) {
+                query.setFetchSize(batchSize);
+                try (ResultSet resultSet = query.executeQuery()) {
+                    int pending = 0;
+                    while (resultSet.next()) {
+                        float[] embedding = new PGvector(resultSet.getString(2)).toArray();
+                        statement.setObject(1, new PGvector(projector.apply(embedding)));
+                        statement.setObject(2, resultSet.getObject(1));
+                        statement.addBatch();
+                        if (++pending == batchSize) {
+                            statement.executeBatch();
+                            updated += pending;
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        statement.executeBatch();
+                        updated += pending;
+                    }
+                }
+            } finally {
+                reader.commit();
+                reader.setAutoCommit(true);
+            }
+        }
+        logger.info("Backfilled {} reduced embeddings on table {}", updated, table);
+        return updated;
+    }
+
+    private List<EmbeddingMatch<TextSegment>> readMatches(ResultSet resultSet) throws SQLException {
+        List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>();
+        while (resultSet.next()) {
+            double score = distance.score(resultSet.getDouble("distance"));
+            TextSegment segment = TextSegment.from(resultSet.getString("text"), parseMetadata(resultSet.getString("metadata")));
+            matches.add(new EmbeddingMatch<>(score, resultSet.getString("embedding_id"), null, segment));
+        }
+        return matches;
+    }
+
+    static String toJson(Map<String, String> metadata) throws SQLException {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Could not serialize metadata filter", e);
+        }
+    }
+
+    private static String toJsonObject(Map<String, Object> metadata) throws SQLException {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Could not serialize metadata", e);
+        }
+    }
+
+    static Metadata parseMetadata(String json) throws SQLException {
+        if (json == null || json.isEmpty()) {
+            return new Metadata();
+        }
+        try {
+            Map<String, Object> values = objectMapper.readValue(json, METADATA_TYPE);
+            return new Metadata(values == null ? Collections.emptyMap() : values);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Could not parse stored metadata: " + json, e);
+        }
+    }
+}
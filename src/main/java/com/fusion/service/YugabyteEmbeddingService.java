@@ -1,5 +1,15 @@
 package com.fusion.service;
 
+import com.fusion.config.EmbeddingStoreFactory;
+import com.fusion.store.CachingEmbeddingModel;
+import com.fusion.store.DiskEmbeddingCache;
+import com.fusion.store.HnswEmbeddingStore;
+import com.fusion.utils.ContentHashes;
+import com.fusion.utils.EmbeddingCopyWriter;
+import com.fusion.utils.PcaProjection;
+import com.fusion.utils.PrecomputedEmbeddings;
+import com.fusion.utils.StreamingPdfSegmenter;
+import com.fusion.utils.VectorCodec;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.document.loader.FileSystemDocumentLoader;
@@ -8,114 +18,770 @@ import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
-import dev.langchain4j.model.output.Response;
 import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
-import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.filter.Filter;
+import dev.langchain4j.store.embedding.filter.MetadataFilterBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 @Service
 public class YugabyteEmbeddingService {
 
     private static final Logger logger = LoggerFactory.getLogger(YugabyteEmbeddingService.class);
 
+    // A full page of text splits into roughly this many 300-character segments
+    private static final int ESTIMATED_SEGMENTS_PER_PAGE = 8;
+
+    // Imported rows need no embedding, so they are written in larger batches
+    private static final int IMPORT_BATCH_SIZE = 1000;
+
+    // Settings and shared components of the services of all models
+    private final Settings settings;
+    private final String modelName;
+    // Identifies the embedding model in cache keys and content hashes
+    private final String modelId;
+
     private final EmbeddingStore<TextSegment> embeddingStore;
+    // Searches, deletes and reduced/compressed vectors go through SQL only when the table is the store
+    private final boolean inProcessStore;
     private final EmbeddingModel embeddingModel;
+    // Document segments go through the persistent embedding cache when it is enabled; queries don't
+    private final EmbeddingModel ingestionModel;
+    private final DiskEmbeddingCache diskCache;
+    private final EmbeddingIngestionEngine ingestionEngine;
+    private final EmbeddingBatcher embeddingBatcher;
+    private final EmbeddingCache embeddingCache;
+    private final SearchResultCache searchResultCache;
+    private final YugabyteEmbeddingRepository repository;
+    private final VectorIndexManager indexManager;
+    private final int maxResults;
+
+    // Reduced-dimension projection learned from the corpus; null until one has been fitted
+    private volatile PcaProjection projection;
+    private final Path projectionPath;
+    private final int projectionSampleSize;
+    private final boolean twoStageSearch;
+    private final int twoStageCandidates;
+
+    // Compressed candidate-search representation of the table; FULL until a migration has succeeded
+    private volatile YugabyteEmbeddingRepository.StorageState storageState =
+            new YugabyteEmbeddingRepository.StorageState(VectorStorageMode.FULL, true);
+    private final int dimension;
+    private final int rescoreCandidates;
+
+    // Ingests into the Yugabyte table stream rows with COPY instead of batched INSERTs
+    private final boolean copyIngest;
+    private final EmbeddingCopyWriter.Format copyFormat;
+    private final int copyRowsPerCopy;
+    // PDFs are read and split page by page instead of being loaded as one document
+    private final boolean streamingIngest;
+    // Re-ingests only embed new and changed segments; ingests of one document key are serialized by these locks
+    private final boolean incrementalIngest;
+    private final Lock[] documentLocks = new Lock[64];
+
+    // Stage meters, tagged with the model; inference is timed by the model wrapper from EmbeddingMetrics.timed()
+    private final Timer parseTimer;
+    private final Timer splitTimer;
+    private final Timer searchTimer;
+    private final Timer insertTimer;
+    private final Timer deleteTimer;
+    private final Timer clearTimer;
+    private final Counter segmentsIngested;
 
     public YugabyteEmbeddingService(
-            @Value("${yugabyte.host}") String host,
-            @Value("${yugabyte.port}") int port,
-            @Value("${yugabyte.database}") String database,
-            @Value("${yugabyte.username}") String username,
-            @Value("${yugabyte.password}") String password,
-            @Value("${yugabyte.table}") String table,
-            @Value("${yugabyte.dimension}") int dimension) {
-
-        logger.info("Initializing YugabyteEmbeddingService with host: {}, port: {}, database: {}", host, port, database);
-
-        // Initialize the embedding store using the properties from application.properties
-        this.embeddingStore = PgVectorEmbeddingStore.builder()
-                .host(host)
-                .port(port)
-                .database(database)
-                .user(username)
-                .password(password)
-                .table("ragschema."+ table)
-                .createTable(true)
-                .dimension(dimension)
-                .build();
-
-        this.embeddingModel = new AllMiniLmL6V2EmbeddingModel();
-    }
-
-    // Method to return the embedding for a given text
-    public List<Float> getEmbeddingForText(String text) {
+            @Value("${yugabyte.search.max-results:5}") int maxResults,
+            @Value("${yugabyte.search.two-stage.enabled:true}") boolean twoStageSearch,
+            @Value("${yugabyte.search.two-stage.candidates:100}") int twoStageCandidates,
+            @Value("${yugabyte.projection.path:data/projection.bin}") String projectionPath,
+            @Value("${yugabyte.projection.sample-size:20000}") int projectionSampleSize,
+            @Value("${yugabyte.batching.max-batch-size:32}") int maxBatchSize,
+            @Value("${yugabyte.batching.max-wait:500us}") Duration maxBatchWait,
+            @Value("${yugabyte.batching.concurrency:0}") int batchConcurrency,
+            @Value("${yugabyte.storage.mode:full}") String storageMode,
+            @Value("${yugabyte.storage.keep-full-vectors:false}") boolean keepFullVectors,
+            @Value("${yugabyte.storage.rescore-candidates:100}") int rescoreCandidates,
+            @Value("${yugabyte.ingest.copy.enabled:true}") boolean copyIngest,
+            @Value("${yugabyte.ingest.copy.format:binary}") String copyFormat,
+            @Value("${yugabyte.ingest.copy.rows-per-copy:50000}") int copyRowsPerCopy,
+            @Value("${yugabyte.ingest.streaming:true}") boolean streamingIngest,
+            @Value("${yugabyte.ingest.incremental:true}") boolean incrementalIngest,
+            @Value("${yugabyte.cache.disk.enabled:true}") boolean diskCacheEnabled,
+            @Value("${yugabyte.cache.disk.path:data/embedding-cache}") String diskCachePath,
+            @Value("${yugabyte.cache.disk.max-entries:1000000}") long diskCacheMaxEntries,
+            EmbeddingModelRegistry models,
+            EmbeddingStore<TextSegment> embeddingStore,
+            EmbeddingStoreFactory storeFactory,
+            EmbeddingIngestionEngine ingestionEngine,
+            EmbeddingCache embeddingCache,
+            SearchResultCache searchResultCache,
+            VectorIndexManager indexManager,
+            EmbeddingMetrics metrics) {
+        this(new Settings(maxResults, twoStageSearch, twoStageCandidates, Paths.get(projectionPath), projectionSampleSize,
+                        maxBatchSize, maxBatchWait, batchConcurrency, storageMode, keepFullVectors, rescoreCandidates,
+                        copyIngest, EmbeddingCopyWriter.Format.fromConfig(copyFormat), copyRowsPerCopy, streamingIngest,
+                        incrementalIngest, diskCacheEnabled, Paths.get(diskCachePath), diskCacheMaxEntries,
+                        models, storeFactory, ingestionEngine, embeddingCache, searchResultCache, metrics,
+                        new ConcurrentHashMap<>()),
+                models.getDefault(), embeddingStore, indexManager);
+        settings.services().put(modelName, this);
+    }
+
+    // The service of one model; the default model's is the Spring bean, the others are created by forModel()
+    private YugabyteEmbeddingService(Settings settings, EmbeddingModelRegistry.RegisteredModel model,
+                                     EmbeddingStore<TextSegment> embeddingStore, VectorIndexManager indexManager) {
+
+        logger.info("Initializing YugabyteEmbeddingService for model {} with store: {}",
+                model.name(), embeddingStore.getClass().getSimpleName());
+        this.settings = settings;
+        this.modelName = model.name();
+        this.modelId = model.id();
+
+        // The store backend (Yugabyte or in-process HNSW) is chosen in EmbeddingStoreConfig
+        this.embeddingStore = embeddingStore;
+        this.inProcessStore = embeddingStore instanceof HnswEmbeddingStore;
+
+        // Wrapped inside the disk cache, so cache hits don't count as inference calls
+        EmbeddingMetrics metrics = settings.metrics();
+        this.embeddingModel = metrics.timed(model.model(), modelName);
+        this.diskCache = settings.diskCacheEnabled()
+                ? openDiskCache(settings.diskCachePath(), modelId, model.dimension(), settings.diskCacheMaxEntries())
+                : null;
+        if (diskCache != null) {
+            metrics.monitor(diskCache, modelName);
+        }
+        this.parseTimer = metrics.timer(EmbeddingMetrics.PARSE, "PDF loading and text extraction per document", modelName);
+        this.splitTimer = metrics.timer(EmbeddingMetrics.SPLIT, "Splitting of a document into segments", modelName);
+        this.searchTimer = metrics.timer(EmbeddingMetrics.SEARCH, "Vector searches, after embedding the query", modelName);
+        this.insertTimer = metrics.timer(EmbeddingMetrics.INSERT, "Writes of embedded batches to the store", modelName);
+        this.deleteTimer = metrics.timer(EmbeddingMetrics.DELETE, "Deletes from the store", modelName, "operation", "delete");
+        this.clearTimer = metrics.timer(EmbeddingMetrics.DELETE, "Deletes from the store", modelName, "operation", "clear");
+        this.segmentsIngested = metrics.counter(EmbeddingMetrics.SEGMENTS_INGESTED, "Segments written to the store", modelName);
+        this.ingestionModel = diskCache == null ? embeddingModel : new CachingEmbeddingModel(embeddingModel, diskCache);
+        this.ingestionEngine = settings.ingestionEngine();
+        // Concurrent query embeddings are coalesced into batched inference calls
+        this.embeddingBatcher = new EmbeddingBatcher(embeddingModel, settings.maxBatchSize(), settings.maxBatchWait(),
+                settings.batchConcurrency());
+        this.embeddingCache = settings.embeddingCache();
+        this.searchResultCache = settings.searchResultCache();
+        this.maxResults = settings.maxResults();
+        this.twoStageSearch = settings.twoStageSearch();
+        this.twoStageCandidates = settings.twoStageCandidates();
+        // A projection only fits the vectors of the model it was fitted on
+        this.projectionPath = model == settings.models().getDefault()
+                ? settings.projectionPath()
+                : settings.projectionPath().resolveSibling(model.name() + "-" + settings.projectionPath().getFileName());
+        this.projectionSampleSize = settings.projectionSampleSize();
+        this.dimension = model.dimension();
+        this.rescoreCandidates = settings.rescoreCandidates();
+        this.copyIngest = settings.copyIngest();
+        this.copyFormat = settings.copyFormat();
+        this.copyRowsPerCopy = settings.copyRowsPerCopy();
+        this.streamingIngest = settings.streamingIngest();
+        this.incrementalIngest = settings.incrementalIngest();
+        for (int i = 0; i < documentLocks.length; i++) {
+            documentLocks[i] = new ReentrantLock();
+        }
+        String table = model.table();
+        String storageMode = settings.storageMode();
+        boolean keepFullVectors = settings.keepFullVectors();
+
+        // Filtered searches run as SQL against the same table, backed by a GIN index on the metadata
+        this.repository = new YugabyteEmbeddingRepository("ragschema." + table, indexManager.getDistance());
+        this.indexManager = indexManager;
+        if (inProcessStore) {
+            // Nothing below applies without the Yugabyte table
+            return;
+        }
+        try {
+            repository.ensureMetadataIndex();
+        } catch (SQLException e) {
+            logger.warn("Could not create metadata index on {}: {}", repository.getTable(), e.getMessage());
+        }
+
+        // Reload a previously fitted projection so reduced vectors survive restarts
+        if (Files.exists(this.projectionPath)) {
+            try {
+                PcaProjection loaded = PcaProjection.load(this.projectionPath);
+                repository.ensureShortEmbeddingColumn(loaded.getOutputDimension());
+                this.projection = loaded;
+                logger.info("Loaded {}-dimension projection from {}", loaded.getOutputDimension(), this.projectionPath);
+            } catch (IOException | SQLException e) {
+                logger.warn("Could not load projection from {}: {}", this.projectionPath, e.getMessage());
+            }
+        }
+
+        // Bring existing rows to the configured storage mode; searches stay on the full vectors if that fails
+        try {
+            VectorStorageMode mode = VectorStorageMode.fromConfig(storageMode);
+            this.storageState = repository.migrateStorage(mode, mode.keepsFullVectors(keepFullVectors), dimension);
+            logger.info("Table {} uses {} storage (full vectors kept: {})", repository.getTable(),
+                    storageState.mode(), storageState.keepFullVectors());
+        } catch (SQLException | IllegalStateException e) {
+            logger.error("Could not migrate {} to {} storage: {}", repository.getTable(), storageMode, e.getMessage());
+            // A table without full vectors can only be searched through its compressed column
+            try {
+                YugabyteEmbeddingRepository.StorageState recorded = repository.getStorageState();
+                if (!recorded.keepFullVectors()) {
+                    this.storageState = recorded;
+                }
+            } catch (SQLException ignored) {
+                // Keep searching the full vectors
+            }
+        }
+
+        // Build or adjust the ANN index without holding up startup; searches scan the table meanwhile
+        indexManager.ensureIndexAsync(storageState);
+    }
+
+    // The service of the named model, or this service for a null or blank name; the services of the other
+    // models are created on first use and share this one's settings, caches and ingestion engine
+    public YugabyteEmbeddingService forModel(String name) {
+        EmbeddingModelRegistry.RegisteredModel model = settings.models().get(name);
+        if (model.name().equals(modelName)) {
+            return this;
+        }
+        if (model == settings.models().getDefault()) {
+            return settings.services().get(model.name());
+        }
+        return settings.services().computeIfAbsent(model.name(), ignored -> new YugabyteEmbeddingService(settings, model,
+                settings.storeFactory().create(model.table(), model.dimension()),
+                settings.services().get(settings.models().getDefault().name()).indexManager.forTable(model.table())));
+    }
+
+    public List<EmbeddingModelRegistry.ModelInfo> getModels() {
+        return settings.models().describe();
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    // Method to return the embedding for a given text.
+    // The array may be shared with the embedding cache and must not be modified.
+    public float[] getEmbeddingForText(String text) {
         logger.info("Generating embedding for text: {}", text);
-         Response<Embedding> embeddingResponse= embeddingModel.embed(text);
-        // Return the embedding as a list of floats
-        return embeddingResponse.content().vectorAsList();
+        return embedQuery(text);
+    }
+
+    // Method to return a reduced-dimension, unit-length embedding for a given text.
+    // Uses the fitted projection when there is one, otherwise a renormalized prefix of the full vector.
+    public float[] getReducedEmbeddingForText(String text, int length) {
+        float[] embedding = embedQuery(text);
+        PcaProjection current = projection;
+        if (current == null) {
+            return PcaProjection.truncateAndNormalize(embedding, length);
+        }
+        return current.project(embedding, length);
+    }
+
+    // Method to learn a projection from a sample of stored vectors, persist it and backfill the reduced column
+    public ProjectionInfo fitProjection(int dimension) throws SQLException, IOException {
+        requireYugabyteStore("Fitting a projection");
+        logger.info("Fitting {}-dimension projection from up to {} stored embeddings", dimension, projectionSampleSize);
+        List<float[]> samples = repository.sampleEmbeddings(projectionSampleSize);
+        PcaProjection fitted = PcaProjection.fit(samples, dimension);
+
+        // Fall back to full search until the new column has been filled in
+        projection = null;
+        searchResultCache.invalidate();
+        repository.resetShortEmbeddingColumn(dimension);
+        repository.backfillShortEmbeddings(fitted::project, ingestionEngine.getBatchSize() * 16);
+        fitted.save(projectionPath);
+        projection = fitted;
+        searchResultCache.invalidate();
+        logger.info("Projection fitted from {} samples and saved to {}", samples.size(), projectionPath);
+        return getProjectionInfo();
+    }
+
+    public ProjectionInfo getProjectionInfo() {
+        PcaProjection current = projection;
+        return current == null
+                ? new ProjectionInfo(false, 0, 0, false)
+                : new ProjectionInfo(true, current.getInputDimension(), current.getOutputDimension(), twoStageSearch);
+    }
+
+    public record ProjectionInfo(boolean fitted, int inputDimension, int outputDimension, boolean twoStageSearch) {
+    }
+
+    public StorageInfo getStorageInfo() {
+        YugabyteEmbeddingRepository.StorageState current = storageState;
+        return new StorageInfo(current.mode(), current.keepFullVectors(), current.keepFullVectors() ? rescoreCandidates : 0);
+    }
+
+    // Method to convert the table to another storage mode; searches use the full vectors while it runs
+    public synchronized StorageInfo migrateStorage(VectorStorageMode mode, boolean keepFullVectors) throws SQLException {
+        requireYugabyteStore("Migrating the storage mode");
+        YugabyteEmbeddingRepository.StorageState previous = storageState;
+        if (previous.keepFullVectors()) {
+            storageState = new YugabyteEmbeddingRepository.StorageState(VectorStorageMode.FULL, true);
+        }
+        searchResultCache.invalidate();
+        try {
+            storageState = repository.migrateStorage(mode, mode.keepsFullVectors(keepFullVectors), dimension);
+            // The index of a compressed column went away with the old column
+            indexManager.ensureIndexAsync(storageState);
+        } catch (SQLException | RuntimeException e) {
+            storageState = previous.keepFullVectors() ? storageState : previous;
+            throw e;
+        } finally {
+            searchResultCache.invalidate();
+        }
+        return getStorageInfo();
+    }
+
+    public record StorageInfo(VectorStorageMode mode, boolean keepFullVectors, int rescoreCandidates) {
+    }
+
+    public VectorIndexManager.IndexState getIndexState() throws SQLException {
+        requireYugabyteStore("Describing the vector index");
+        return indexManager.describe();
+    }
+
+    // Method to drop and rebuild the ANN index in the background
+    public VectorIndexManager.IndexState rebuildIndex() throws SQLException {
+        requireYugabyteStore("Rebuilding the vector index");
+        indexManager.rebuildAsync(storageState);
+        return indexManager.describe();
+    }
+
+    private void requireYugabyteStore(String operation) {
+        if (inProcessStore) {
+            throw new IllegalStateException(operation + " requires the yugabyte store backend");
+        }
+    }
+
+    // Method to embed a stream of texts, writing NDJSON results to the output as batches complete
+    public int streamEmbeddings(InputStream in, OutputStream out, VectorCodec.Encoding encoding) throws IOException {
+        return new BulkEmbeddingStreamer(ingestionEngine, ingestionModel).stream(in, out, encoding);
+    }
+
+    public CacheStatistics getEmbeddingCacheStats() {
+        return embeddingCache.stats();
+    }
+
+    public CacheStatistics getSearchCacheStats() {
+        return searchResultCache.stats();
+    }
+
+    // Null when the persistent embedding cache is disabled or could not be opened
+    public CacheStatistics getDiskCacheStats() {
+        if (diskCache == null) {
+            return null;
+        }
+        long hits = diskCache.hits();
+        long misses = diskCache.misses();
+        return new CacheStatistics(diskCache.size(), hits, misses,
+                hits + misses == 0 ? 0.0 : (double) hits / (hits + misses), diskCache.evictions());
+    }
+
+    // Ingestion still works without the cache, just without skipping repeated segments
+    private static DiskEmbeddingCache openDiskCache(Path directory, String modelId, int dimension, long maxEntries) {
+        try {
+            return DiskEmbeddingCache.shared(directory, modelId, dimension, maxEntries);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Could not open the embedding cache in {}, ingesting without it: {}", directory, e.getMessage());
+            return null;
+        }
+    }
+
+    public EmbeddingBatcher.Stats getBatchingStats() {
+        return embeddingBatcher.stats();
+    }
+
+    // Only the default model's service is a bean; it shuts down the others too
+    @PreDestroy
+    public void shutdown() {
+        for (YugabyteEmbeddingService service : settings.services().values()) {
+            service.embeddingBatcher.close();
+            if (service != this && service.embeddingStore instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Could not close the store of model {}: {}", service.modelName, e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Query-side embeddings go through the cache; misses are batched with other concurrent requests
+    private float[] embedQuery(String text) {
+        return embeddingCache.get(modelId, text, normalized -> {
+            try {
+                return embeddingBatcher.embed(normalized).join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        });
     }
 
     // Method to ingest document into embedding store with metadata
     public void ingestDocument(String filePath, Map<String, String> metadata) throws Exception {
+        ingestDocument(filePath, metadata, IngestionListener.NONE);
+    }
+
+    // Method to ingest document into embedding store with metadata, reporting progress to the listener
+    public void ingestDocument(String filePath, Map<String, String> metadata, IngestionListener listener) throws Exception {
+        ingestDocument(filePath, null, metadata, listener);
+    }
+
+    public void ingestDocument(String filePath, String documentKey, Map<String, String> metadata, IngestionListener listener) throws Exception {
+        ingestDocument(filePath, documentKey, metadata, true, listener);
+    }
+
+    // Method to ingest a document under a key that identifies it across re-ingests: a doc_key metadata entry, or
+    // else the name, e.g. the uploaded file name, scoped to the rest of the metadata. Re-ingesting an unchanged
+    // document does nothing; a changed one only embeds its new and changed segments and, with replace, deletes
+    // its rows that are gone from the new version. Without replace they are kept alongside the new ones.
+    public void ingestDocument(String filePath, String documentKey, Map<String, String> metadata, boolean replace,
+                               IngestionListener listener) throws Exception {
         logger.info("Ingesting document from filePath: {} with metadata: {}", filePath, metadata);
 
         Path path = Paths.get(filePath);
-        Document document = FileSystemDocumentLoader.loadDocument(path, new ApachePdfBoxDocumentParser());
+        if (!incrementalIngest || inProcessStore) {
+            ingestSegments(path, metadata, null, listener);
+            return;
+        }
+
+        String explicitKey = metadata.get(IncrementalSegmentFilter.DOCUMENT_KEY);
+        String key = explicitKey != null ? explicitKey
+                : derivedKey(documentKey != null ? documentKey : path.getFileName().toString(), metadata);
+        // Concurrent ingests of the same document would both insert its new segments
+        Lock lock = documentLocks[Math.floorMod(key.hashCode(), documentLocks.length)];
+        lock.lock();
+        try {
+            String documentHash = ContentHashes.documentHash(modelId, path, metadata);
+            YugabyteEmbeddingRepository.DocumentState recorded = repository.getDocumentState(key);
+            // The row count catches documents whose rows were deleted since, or whose last ingest failed midway
+            if (recorded != null && recorded.documentHash().equals(documentHash)
+                    && repository.countRows(Map.of(IncrementalSegmentFilter.DOCUMENT_KEY, key,
+                    IncrementalSegmentFilter.DOCUMENT_HASH, documentHash)) == recorded.segments()) {
+                logger.info("Document {} is unchanged, skipping ingestion.", key);
+                listener.onSegmentsSplit(0);
+                return;
+            }
+
+            Set<UUID> existingIds = repository.findIds(Map.of(IncrementalSegmentFilter.DOCUMENT_KEY, key));
+            IncrementalSegmentFilter.Result result = ingestSegments(path, metadata,
+                    source -> new IncrementalSegmentFilter(source, modelId, key, documentHash, existingIds,
+                            replace, repository),
+                    listener);
+            repository.putDocumentState(new YugabyteEmbeddingRepository.DocumentState(key, documentHash, result.segments()));
+            logger.info("Document {}: {} segments, {} embedded, {} unchanged, {} deleted.",
+                    key, result.segments(), result.embedded(), result.unchanged(), result.deleted());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // The document name followed by the metadata entries in key order
+    private static String derivedKey(String name, Map<String, String> metadata) {
+        StringBuilder key = new StringBuilder(name);
+        for (Map.Entry<String, String> entry : new TreeMap<>(metadata).entrySet()) {
+            key.append('|').append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return key.toString();
+    }
+
+    // Splits the document and embeds and stores its segments; with a filter, only the segments it passes on
+    private IncrementalSegmentFilter.Result ingestSegments(Path path, Map<String, String> metadata,
+                                                          Function<Iterator<TextSegment>, IncrementalSegmentFilter> filterFactory,
+                                                          IngestionListener listener) throws Exception {
+        StreamingPdfSegmenter segmenter = null;
+        try {
+            Iterator<TextSegment> source;
+            int expectedSegments;
+            if (streamingIngest) {
+                // Pages are read, split, embedded and stored as a pipeline, so memory use doesn't grow with the document
+                segmenter = StreamingPdfSegmenter.open(path, Metadata.from(metadata), 300, 0);
+                source = segmenter;
+                // The segment count is only known after the last page, so estimate it from the page count
+                expectedSegments = segmenter.getPageCount() * ESTIMATED_SEGMENTS_PER_PAGE;
+            } else {
+                long parseStart = System.nanoTime();
+                Document document = FileSystemDocumentLoader.loadDocument(path, new ApachePdfBoxDocumentParser());
+                parseTimer.record(System.nanoTime() - parseStart, TimeUnit.NANOSECONDS);
+
+                // Add metadata
+                for (Map.Entry<String, String> entry : metadata.entrySet()) {
+                    document.metadata().add(entry.getKey(), entry.getValue());
+                }
+
+                // Split document into segments
+                long splitStart = System.nanoTime();
+                List<TextSegment> segments = DocumentSplitters.recursive(300, 0).split(document);
+                splitTimer.record(System.nanoTime() - splitStart, TimeUnit.NANOSECONDS);
+                source = segments.iterator();
+                expectedSegments = segments.size();
+            }
+
+            IncrementalSegmentFilter filter = filterFactory == null ? null : filterFactory.apply(source);
+            Iterator<TextSegment> segments = reportingTotal(filter != null ? filter : source, listener);
+            EmbeddingIngestionEngine.IngestionStats stats = embedAndStore(expectedSegments,
+                    filter == null ? null : filter::takeIds,
+                    writer -> ingestionEngine.ingest(segments, ingestionModel, writer, listener));
+            logger.info("Document ingested successfully into the embeddings store: {} segments ({} segments/sec).",
+                    stats.segments(), String.format("%.1f", stats.segmentsPerSecond()));
+            if (filter == null) {
+                return null;
+            }
+            try {
+                return filter.finish();
+            } finally {
+                searchResultCache.invalidate();
+            }
+        } finally {
+            if (segmenter != null) {
+                // Parsing and splitting are interleaved with embedding; the segmenter adds up the time of each
+                parseTimer.record(segmenter.getParseNanos(), TimeUnit.NANOSECONDS);
+                splitTimer.record(segmenter.getSplitNanos(), TimeUnit.NANOSECONDS);
+                segmenter.close();
+            }
+        }
+    }
+
+    // Tells the listener how many segments there are to embed once the last one has been taken
+    private static Iterator<TextSegment> reportingTotal(Iterator<TextSegment> segments, IngestionListener listener) {
+        return new Iterator<>() {
+            private int taken;
+
+            @Override
+            public boolean hasNext() {
+                boolean more = segments.hasNext();
+                if (!more) {
+                    listener.onSegmentsSplit(taken);
+                }
+                return more;
+            }
+
+            @Override
+            public TextSegment next() {
+                TextSegment segment = segments.next();
+                taken++;
+                return segment;
+            }
+        };
+    }
+
+    // Embeds the segments in batches across the engine's workers and stores them, under the ids given by
+    // segmentIds or under new random ids if it is null
+    private EmbeddingIngestionEngine.IngestionStats embedAndStore(int expectedSegments,
+                                                                 Function<List<TextSegment>, List<UUID>> segmentIds,
+                                                                 Ingestion run) throws Exception {
+        Ingestion ingestion = writer -> run.run(timed(writer));
+        // Large loads into an empty table insert faster without maintaining the ANN index; it is rebuilt concurrently afterwards
+        boolean deferIndex = !inProcessStore && indexManager.shouldDeferIndex(expectedSegments, repository);
+        if (deferIndex) {
+            indexManager.dropIndex();
+        }
+
+        EmbeddingIngestionEngine.IngestionStats stats;
+        try {
+            if (inProcessStore || !copyIngest) {
+                stats = ingestion.run(segmentIds == null ? embeddingStore::addAll : (embeddings, segments) ->
+                        embeddingStore.addAll(segmentIds.apply(segments).stream().map(UUID::toString).toList(), embeddings, segments));
+            } else {
+                stats = copyIngest(segmentIds, ingestion);
+            }
+            segmentsIngested.increment(stats.segments());
+            if (!inProcessStore) {
+                PcaProjection current = projection;
+                if (current != null) {
+                    repository.backfillShortEmbeddings(current::project, ingestionEngine.getBatchSize() * 16);
+                }
+                // Last, since it may discard the full vectors the projection is computed from
+                repository.compactNewRows(storageState, dimension);
+            }
+        } finally {
+            if (deferIndex) {
+                indexManager.ensureIndexAsync(storageState);
+            }
+            // Even a partial ingest changes what searches can return
+            searchResultCache.invalidate();
+        }
+        return stats;
+    }
+
+    // Times every batch handed to the writer; COPY writes only block when the stream's buffer is flushed
+    private EmbeddingBatchWriter timed(EmbeddingBatchWriter writer) {
+        return (embeddings, segments) -> {
+            long start = System.nanoTime();
+            try {
+                writer.write(embeddings, segments);
+            } finally {
+                insertTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    // Streams the embedded segments into the table over one COPY connection; rows are committed every rowsPerCopy
+    private EmbeddingIngestionEngine.IngestionStats copyIngest(Function<List<TextSegment>, List<UUID>> segmentIds,
+                                                               Ingestion ingestion) throws Exception {
+        try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
+             EmbeddingCopyWriter writer = new EmbeddingCopyWriter(connection, repository.getTable(), copyFormat, copyRowsPerCopy)) {
+            try {
+                return ingestion.run(segmentIds == null ? writer::writeAll : (embeddings, segments) ->
+                        writer.writeAll(segmentIds.apply(segments), embeddings, segments));
+            } catch (Exception e) {
+                writer.abort();
+                throw e;
+            }
+        }
+    }
 
-        // Add metadata
-        for (Map.Entry<String, String> entry : metadata.entrySet()) {
-            document.metadata().add(entry.getKey(), entry.getValue());
+    // One run of the ingestion engine against the given writer
+    @FunctionalInterface
+    private interface Ingestion {
+        EmbeddingIngestionEngine.IngestionStats run(EmbeddingBatchWriter writer) throws Exception;
+    }
+
+    // Method to load precomputed embeddings (a CSV or binary export from PDFEmbeddingProcessor) without running
+    // the model. Rows that came from an incremental ingest get back their content-derived ids, so re-ingesting
+    // their document afterwards only refreshes them; other rows get new random ids.
+    public EmbeddingIngestionEngine.IngestionStats importEmbeddings(Path source) throws Exception {
+        logger.info("Importing precomputed embeddings from {}", source);
+        try (PrecomputedEmbeddings rows = PrecomputedEmbeddings.open(source)) {
+            if (rows.dimension() != 0 && rows.dimension() != dimension) {
+                throw new IllegalArgumentException(source + " holds " + rows.dimension()
+                        + "-dimension embeddings, the table " + dimension + "-dimension ones");
+            }
+            Map<String, Integer> occurrences = new HashMap<>();
+            EmbeddingIngestionEngine.IngestionStats stats = embedAndStore(
+                    (int) Math.min(rows.estimatedRows(), Integer.MAX_VALUE),
+                    segments -> importedIds(segments, occurrences),
+                    writer -> importRows(rows, writer));
+            logger.info("Imported {} embeddings from {} ({} rows/sec).",
+                    stats.segments(), source, String.format("%.1f", stats.segmentsPerSecond()));
+            return stats;
         }
+    }
 
-        EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                .documentSplitter(DocumentSplitters.recursive(300, 0))  // Split document into segments
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore)
-                .build();
+    private static EmbeddingIngestionEngine.IngestionStats importRows(PrecomputedEmbeddings rows, EmbeddingBatchWriter writer) throws Exception {
+        long start = System.nanoTime();
+        int count = 0;
+        int batches = 0;
+        List<Embedding> embeddings = new ArrayList<>(IMPORT_BATCH_SIZE);
+        List<TextSegment> segments = new ArrayList<>(IMPORT_BATCH_SIZE);
+        while (rows.hasNext()) {
+            PrecomputedEmbeddings.Row row = rows.next();
+            embeddings.add(Embedding.from(row.vector()));
+            segments.add(row.segment());
+            if (segments.size() == IMPORT_BATCH_SIZE || !rows.hasNext()) {
+                writer.write(embeddings, segments);
+                count += segments.size();
+                batches++;
+                embeddings = new ArrayList<>(IMPORT_BATCH_SIZE);
+                segments = new ArrayList<>(IMPORT_BATCH_SIZE);
+            }
+        }
+        return new EmbeddingIngestionEngine.IngestionStats(count, batches, System.nanoTime() - start);
+    }
 
-        // Ingest the document into the embeddings store
-        ingestor.ingest(document);
-        logger.info("Document ingested successfully into the embeddings store.");
+    // The id an incremental ingest gave the row, from its document key and segment hash, or a random one
+    private static List<UUID> importedIds(List<TextSegment> segments, Map<String, Integer> occurrences) {
+        List<UUID> ids = new ArrayList<>(segments.size());
+        for (TextSegment segment : segments) {
+            String key = segment.metadata().getString(IncrementalSegmentFilter.DOCUMENT_KEY);
+            String hash = segment.metadata().getString(IncrementalSegmentFilter.SEGMENT_HASH);
+            if (key == null || hash == null) {
+                ids.add(UUID.randomUUID());
+            } else {
+                int occurrence = occurrences.merge(key + '\0' + hash, 1, Integer::sum) - 1;
+                ids.add(ContentHashes.segmentId(key, hash, occurrence));
+            }
+        }
+        return ids;
     }
 
     // Method to search embeddings for the most relevant matches
-    public List<String> search(String queryText, Map<String, String> metadataFilter) {
-        logger.info("Searching embeddings for query: {} with metadataFilter: {}", queryText, metadataFilter);
+    public List<String> search(String queryText, Map<String, String> metadataFilter) throws SQLException {
+        return search(queryText, metadataFilter, SearchTuning.DEFAULT);
+    }
 
-        // Step 1: Embed the query text
-        Embedding queryEmbedding = embeddingModel.embed(queryText).content();
+    // Method to search embeddings with per-request ANN settings (ef_search for HNSW, probes for IVFFlat)
+    public List<String> search(String queryText, Map<String, String> metadataFilter, SearchTuning tuning) throws SQLException {
+        logger.info("Searching embeddings for query: {} with metadataFilter: {}, tuning: {}", queryText, metadataFilter, tuning);
 
-        // Step 2: Find the relevant matches from the embedding store
-        List<EmbeddingMatch<TextSegment>> matches = embeddingStore.findRelevant(queryEmbedding, 5);
+        List<String> cached = searchResultCache.get(modelName, queryText, metadataFilter, maxResults, tuning);
+        if (cached != null) {
+            logger.info("Search served from cache. Found {} matching results.", cached.size());
+            return cached;
+        }
+        long generation = searchResultCache.currentGeneration();
 
-        // Step 3: Filter results based on metadata
-        List<String> filteredResults = new ArrayList<>();
-        for (EmbeddingMatch<TextSegment> match : matches) {
-            TextSegment segment = match.embedded();
+        // Step 1: Embed the query text
+        Embedding queryEmbedding = Embedding.from(embedQuery(queryText));
 
-            // Check if the metadata matches the filter
-            if (metadataMatches(segment.metadata(), metadataFilter)) {
-                filteredResults.add(segment.text());
+        // Step 2: Find the closest matches that satisfy the metadata filter in a single query,
+        // pre-selecting candidates on the compressed or reduced vectors when the table has them
+        PcaProjection current = projection;
+        YugabyteEmbeddingRepository.StorageState storage = storageState;
+        List<EmbeddingMatch<TextSegment>> matches;
+        long searchStart = System.nanoTime();
+        try {
+            if (inProcessStore) {
+                HnswEmbeddingStore store = (HnswEmbeddingStore) embeddingStore;
+                EmbeddingSearchRequest request = EmbeddingSearchRequest.builder()
+                        .queryEmbedding(queryEmbedding)
+                        .maxResults(maxResults)
+                        .filter(toFilter(metadataFilter))
+                        .build();
+                matches = store.search(request, tuning.efSearch() != null ? tuning.efSearch() : store.getEfSearch()).matches();
+            } else if (storage.mode() != VectorStorageMode.FULL) {
+                int candidates = Math.max(rescoreCandidates, maxResults);
+                matches = repository.searchCompact(queryEmbedding, storage.mode(), storage.keepFullVectors(), metadataFilter,
+                        candidates, maxResults, indexManager.searchSettings(tuning, candidates));
+            } else if (current != null && twoStageSearch && indexManager.getType() == VectorIndexManager.Type.NONE) {
+                // The reduced column only pays off for scans; with an ANN index on the full vectors the index wins
+                matches = repository.searchTwoStage(queryEmbedding, current.project(queryEmbedding.vector()), metadataFilter,
+                        Math.max(twoStageCandidates, maxResults), maxResults);
+            } else {
+                matches = repository.search(queryEmbedding, metadataFilter, maxResults, indexManager.searchSettings(tuning, maxResults));
             }
+        } finally {
+            searchTimer.record(System.nanoTime() - searchStart, TimeUnit.NANOSECONDS);
+        }
+
+        // Step 3: Collect the matching texts
+        List<String> results = new ArrayList<>();
+        for (EmbeddingMatch<TextSegment> match : matches) {
+            results.add(match.embedded().text());
         }
 
-        logger.info("Search completed. Found {} matching results.", filteredResults.size());
-        return filteredResults;
+        searchResultCache.put(modelName, queryText, metadataFilter, maxResults, tuning, generation, results);
+        logger.info("Search completed. Found {} matching results.", results.size());
+        return results;
     }
 
     // Health check for Yugabyte connection
@@ -135,8 +801,22 @@ public class YugabyteEmbeddingService {
     // Method to delete entries by metadata filter
     public void deleteByMetadata(Map<String, String> metadataFilter) throws SQLException {
         logger.info("Deleting entries from embeddings store with metadata filter: {}", metadataFilter);
+        // An empty filter would match every row; clearing the store has its own endpoint
+        if (metadataFilter == null || metadataFilter.isEmpty()) {
+            throw new IllegalArgumentException("Deleting by metadata requires at least one metadata filter");
+        }
+        long start = System.nanoTime();
+        if (inProcessStore) {
+            try {
+                embeddingStore.removeAll(toFilter(metadataFilter));
+            } finally {
+                deleteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                searchResultCache.invalidate();
+            }
+            return;
+        }
 
-        StringBuilder query = new StringBuilder("DELETE FROM document_embeddings WHERE ");
+        StringBuilder query = new StringBuilder("DELETE FROM " + repository.getTable() + " WHERE ");
         boolean firstCondition = true;
         for (String key : metadataFilter.keySet()) {
             if (!firstCondition) {
@@ -156,21 +836,49 @@ public class YugabyteEmbeddingService {
             }
             int rowsAffected = statement.executeUpdate();
             logger.info("{} entries deleted based on metadata filter.", rowsAffected);
+        } finally {
+            deleteTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            searchResultCache.invalidate();
         }
     }
 
-    // Method to clear all entries from the document_embeddings table
+    // Method to clear all entries from the model's table
     public void clearAllEntries() throws SQLException {
-        logger.info("Clearing all entries from document_embeddings table.");
-        String sql = "TRUNCATE TABLE document_embeddings";
+        logger.info("Clearing all entries from {} table.", repository.getTable());
+        long start = System.nanoTime();
+        if (inProcessStore) {
+            try {
+                embeddingStore.removeAll();
+            } finally {
+                clearTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                searchResultCache.invalidate();
+            }
+            return;
+        }
+        String sql = "TRUNCATE TABLE " + repository.getTable();
         try (Connection connection = com.fusion.YugabyteConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.executeUpdate();
-            logger.info("All entries cleared from document_embeddings table.");
+            logger.info("All entries cleared from {} table.", repository.getTable());
+        } finally {
+            clearTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            searchResultCache.invalidate();
         }
     }
 
-    public boolean metadataMatches(Metadata metadata, Map<String, String> metadataFilter) {
+    // Equality on every entry, or null for an empty filter
+    private static Filter toFilter(Map<String, String> metadataFilter) {
+        Filter filter = null;
+        if (metadataFilter != null) {
+            for (Map.Entry<String, String> entry : metadataFilter.entrySet()) {
+                Filter condition = MetadataFilterBuilder.metadataKey(entry.getKey()).isEqualTo(entry.getValue());
+                filter = filter == null ? condition : filter.and(condition);
+            }
+        }
+        return filter;
+    }
+
+    public static boolean metadataMatches(Metadata metadata, Map<String, String> metadataFilter) {
         for (Map.Entry<String, String> entry : metadataFilter.entrySet()) {
             String key = entry.getKey();
             String expectedValue = entry.getValue();
@@ -184,4 +892,16 @@ public class YugabyteEmbeddingService {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    // Configuration and components shared by the services of all models, keyed by model name in services
+    private record Settings(int maxResults, boolean twoStageSearch, int twoStageCandidates, Path projectionPath,
+                            int projectionSampleSize, int maxBatchSize, Duration maxBatchWait, int batchConcurrency,
+                            String storageMode, boolean keepFullVectors, int rescoreCandidates, boolean copyIngest,
+                            EmbeddingCopyWriter.Format copyFormat, int copyRowsPerCopy, boolean streamingIngest,
+                            boolean incrementalIngest, boolean diskCacheEnabled, Path diskCachePath, long diskCacheMaxEntries,
+                            EmbeddingModelRegistry models, EmbeddingStoreFactory storeFactory,
+                            EmbeddingIngestionEngine ingestionEngine, EmbeddingCache embeddingCache,
+                            SearchResultCache searchResultCache, EmbeddingMetrics metrics,
+                            Map<String, YugabyteEmbeddingService> services) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.fusion.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Embedding model that serves segments it has embedded before from a DiskEmbeddingCache
+// and only runs the wrapped model on the rest
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingEmbeddingModel.class);
+
+    private final EmbeddingModel delegate;
+    private final DiskEmbeddingCache cache;
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, DiskEmbeddingCache cache) {
+        this.delegate = delegate;
+        this.cache = cache;
+    }
+
+    // Wraps the model with the shared cache in the default directory; returns it unchanged if that can't be opened
+    public static EmbeddingModel withDefaultCache(EmbeddingModel model, String modelId, int dimension) {
+        try {
+            return new CachingEmbeddingModel(model, DiskEmbeddingCache.shared(
+                    Paths.get(DiskEmbeddingCache.DEFAULT_DIRECTORY), modelId, dimension, DiskEmbeddingCache.DEFAULT_MAX_ENTRIES));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Embedding without the persistent cache: {}", e.getMessage());
+            return model;
+        }
+    }
+
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    public DiskEmbeddingCache getCache() {
+        return cache;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        Embedding[] embeddings = new Embedding[segments.size()];
+        List<TextSegment> misses = new ArrayList<>();
+        List<Integer> missPositions = new ArrayList<>();
+        for (int i = 0; i < segments.size(); i++) {
+            float[] cached = cache.get(segments.get(i).text());
+            if (cached != null) {
+                embeddings[i] = Embedding.from(cached);
+            } else {
+                misses.add(segments.get(i));
+                missPositions.add(i);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            List<Embedding> computed = delegate.embedAll(misses).content();
+            for (int i = 0; i < computed.size(); i++) {
+                embeddings[missPositions.get(i)] = computed.get(i);
+                cache.put(misses.get(i).text(), computed.get(i).vector());
+            }
+        }
+        return Response.from(Arrays.asList(embeddings));
+    }
+}
@@ -0,0 +1,429 @@
+package com.fusion.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent cache of the embeddings one model produced, keyed by a 128-bit SHA-256 prefix of the text.
+ * Entries are fixed-width records (hash, then the float vector) appended to a memory-mapped log, and an
+ * in-memory index maps each hash to its record in access order. Beyond maxEntries the least recently used
+ * entries are dropped from the index; once dead records outnumber live ones the log is compacted on a background
+ * thread by copying the live records, least recently used first, to a new file that atomically replaces the old
+ * one. Lookups and appends continue during the copy; only the swap, which also moves the records appended
+ * meanwhile, holds the lock. The copy order makes a reopened cache evict roughly the entries that were least
+ * recently used before the restart.
+ * The record count in the header is advanced after each record is complete, so a crash loses at most the
+ * entry being written. A lock file keeps a second process from opening the same log.
+ * Use {@link #shared} so that every user of a model in the JVM shares one instance; all methods are thread-safe.
+ */
+public final class DiskEmbeddingCache implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(DiskEmbeddingCache.class);
+
+    // Default location shared by the service and the standalone processors
+    public static final String DEFAULT_DIRECTORY = "data/embedding-cache";
+    public static final long DEFAULT_MAX_ENTRIES = 1_000_000;
+
+    private static final int MAGIC = 0x45434143;
+    private static final int VERSION = 1;
+    private static final int MAX_MODEL_ID_BYTES = 1024;
+    private static final int HASH_BYTES = 16;
+    private static final long TARGET_CHUNK_BYTES = 64L << 20;
+    // Compaction waits for at least this many dead records
+    private static final long MIN_DEAD_RECORDS = 1024;
+
+    // Header: magic, version, dimension, model id length, record count, model id bytes
+    private static final long MAGIC_OFFSET = 0;
+    private static final long VERSION_OFFSET = 4;
+    private static final long DIMENSION_OFFSET = 8;
+    private static final long MODEL_ID_LENGTH_OFFSET = 12;
+    private static final long COUNT_OFFSET = 16;
+    private static final long MODEL_ID_OFFSET = 24;
+
+    private static final Map<Path, DiskEmbeddingCache> SHARED = new HashMap<>();
+
+    // One compaction at a time across all caches
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "embedding-cache-compact");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path file;
+    private final String modelId;
+    private final int dimension;
+    private final long maxEntries;
+    private final int recordBytes;
+    // Mapped chunk size, a whole number of records so none crosses a chunk boundary; the header fills the first slots
+    private final long chunkBytes;
+    private final long headerBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+
+    private final LinkedHashMap<Hash, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    private MappedArena arena;
+    private long records;
+    private boolean compacting;
+    private boolean closed;
+    // Read by metrics without taking the lock
+    private volatile long size;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private DiskEmbeddingCache(Path file, String modelId, int dimension, long maxEntries) throws IOException {
+        if (dimension <= 0 || maxEntries <= 0) {
+            throw new IllegalArgumentException("dimension and maxEntries must be positive");
+        }
+        this.file = file;
+        this.modelId = modelId;
+        this.dimension = dimension;
+        this.maxEntries = maxEntries;
+        this.recordBytes = HASH_BYTES + dimension * Float.BYTES;
+        long headerRecords = (MODEL_ID_OFFSET + MAX_MODEL_ID_BYTES + recordBytes - 1) / recordBytes;
+        this.headerBytes = headerRecords * recordBytes;
+        this.chunkBytes = Math.max(headerRecords, TARGET_CHUNK_BYTES / recordBytes) * recordBytes;
+
+        Files.createDirectories(file.getParent());
+        this.lockChannel = FileChannel.open(file.resolveSibling(file.getFileName() + ".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Embedding cache " + file + " is in use by another process");
+        }
+        try {
+            open();
+        } catch (IOException | RuntimeException e) {
+            lock.release();
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    // The JVM-wide instance for the model's log in the directory, opened on first use and closed at exit
+    public static synchronized DiskEmbeddingCache shared(Path directory, String modelId, int dimension, long maxEntries) throws IOException {
+        Path file = directory.toAbsolutePath().normalize().resolve(modelId.replaceAll("[^A-Za-z0-9._-]", "_") + ".cache");
+        DiskEmbeddingCache cache = SHARED.get(file);
+        if (cache == null || cache.isClosed()) {
+            cache = new DiskEmbeddingCache(file, modelId, dimension, maxEntries);
+            if (SHARED.isEmpty()) {
+                Runtime.getRuntime().addShutdownHook(new Thread(DiskEmbeddingCache::closeShared, "embedding-cache-close"));
+            }
+            SHARED.put(file, cache);
+        } else if (cache.dimension != dimension) {
+            throw new IllegalArgumentException("Embedding cache " + file + " holds " + cache.dimension
+                    + "-dimension vectors, not " + dimension);
+        } else if (cache.maxEntries != maxEntries) {
+            throw new IllegalArgumentException("Embedding cache " + file + " is already open with at most "
+                    + cache.maxEntries + " entries, not " + maxEntries);
+        }
+        return cache;
+    }
+
+    private static synchronized void closeShared() {
+        for (DiskEmbeddingCache cache : SHARED.values()) {
+            try {
+                cache.close();
+            } catch (IOException e) {
+                logger.warn("Could not close embedding cache {}: {}", cache.file, e.getMessage());
+            }
+        }
+        SHARED.clear();
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public String getModelId() {
+        return modelId;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    // The cached vector for the text, or null
+    public float[] get(String text) {
+        Hash hash = Hash.of(text);
+        synchronized (this) {
+            Long slot = closed ? null : index.get(hash);
+            if (slot == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            float[] vector = new float[dimension];
+            arena.getFloats(offset(slot) + HASH_BYTES, vector);
+            return vector;
+        }
+    }
+
+    public void put(String text, float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a " + dimension + "-dimension vector, got " + vector.length);
+        }
+        Hash hash = Hash.of(text);
+        synchronized (this) {
+            if (closed || index.containsKey(hash)) {
+                return;
+            }
+            long slot = records;
+            long offset = offset(slot);
+            arena.ensureCapacity(offset + recordBytes);
+            hash.write(arena, offset);
+            arena.putFloats(offset + HASH_BYTES, vector);
+            // Publish the record only once it is complete
+            records++;
+            arena.putLong(COUNT_OFFSET, records);
+            index.put(hash, slot);
+
+            evictOverflow();
+            long dead = records - index.size();
+            if (!compacting && dead >= MIN_DEAD_RECORDS && dead > index.size()) {
+                startCompaction();
+            }
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    // Flushes appended records to disk
+    public synchronized void flush() {
+        if (!closed) {
+            arena.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        index.clear();
+        size = 0;
+        try {
+            arena.close();
+        } finally {
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private void open() throws IOException {
+        arena = new MappedArena(file, chunkBytes);
+        arena.ensureCapacity(headerBytes);
+        if (!headerMatches()) {
+            if (arena.getInt(MAGIC_OFFSET) != 0) {
+                logger.warn("Embedding cache {} has an incompatible header, starting empty", file);
+            }
+            reset();
+            return;
+        }
+        records = arena.getLong(COUNT_OFFSET);
+        arena.ensureCapacity(offset(records));
+        // Later records of a hash win; the log order approximates the access order before the last close
+        for (long slot = 0; slot < records; slot++) {
+            index.put(Hash.read(arena, offset(slot)), slot);
+        }
+        evictOverflow();
+        size = index.size();
+        logger.info("Opened embedding cache {} for model {} with {} entries ({} records)", file, modelId, index.size(), records);
+    }
+
+    private boolean headerMatches() {
+        if (arena.getInt(MAGIC_OFFSET) != MAGIC || arena.getInt(VERSION_OFFSET) != VERSION
+                || arena.getInt(DIMENSION_OFFSET) != dimension) {
+            return false;
+        }
+        int length = arena.getInt(MODEL_ID_LENGTH_OFFSET);
+        return length >= 0 && length <= MAX_MODEL_ID_BYTES
+                && modelId.equals(new String(arena.getBytes(MODEL_ID_OFFSET, length), StandardCharsets.UTF_8));
+    }
+
+    private void reset() {
+        index.clear();
+        size = 0;
+        records = 0;
+        writeHeader(arena, 0);
+    }
+
+    private void writeHeader(MappedArena target, long count) {
+        byte[] id = modelId.getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_MODEL_ID_BYTES) {
+            throw new IllegalArgumentException("Model id is too long: " + modelId);
+        }
+        target.putInt(VERSION_OFFSET, VERSION);
+        target.putInt(DIMENSION_OFFSET, dimension);
+        target.putInt(MODEL_ID_LENGTH_OFFSET, id.length);
+        target.putLong(COUNT_OFFSET, count);
+        target.putBytes(MODEL_ID_OFFSET, id);
+        // Last, so a half-written header is not mistaken for a valid one
+        target.putInt(MAGIC_OFFSET, MAGIC);
+    }
+
+    private void evictOverflow() {
+        Iterator<Long> eldest = index.values().iterator();
+        while (index.size() > maxEntries) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+        size = index.size();
+    }
+
+    // Takes the slots of the live records, least recently used first, and copies them to a new log off the lock
+    private void startCompaction() {
+        long[] slots = new long[index.size()];
+        int i = 0;
+        for (Long slot : index.values()) {
+            slots[i++] = slot;
+        }
+        compacting = true;
+        MappedArena source = arena;
+        long snapshotRecords = records;
+        COMPACTOR.execute(() -> compact(source, slots, snapshotRecords));
+    }
+
+    // Records below snapshotRecords are never rewritten, so they can be read from the old log without the lock
+    private void compact(MappedArena source, long[] slots, long snapshotRecords) {
+        long start = System.nanoTime();
+        long before = snapshotRecords;
+        Path compacted = null;
+        try {
+            compacted = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".compact");
+            try (MappedArena target = new MappedArena(compacted, chunkBytes)) {
+                target.ensureCapacity(offset(slots.length));
+                long[] moved = new long[(int) snapshotRecords];
+                Arrays.fill(moved, -1);
+                for (int slot = 0; slot < slots.length; slot++) {
+                    target.putBytes(offset(slot), source.getBytes(offset(slots[slot]), recordBytes));
+                    moved[(int) slots[slot]] = slot;
+                }
+                target.force();
+
+                synchronized (this) {
+                    if (closed) {
+                        return;
+                    }
+                    // Entries still live from the snapshot keep their copied record; records appended since are moved now
+                    long[] newSlots = new long[index.size()];
+                    long next = slots.length;
+                    int i = 0;
+                    for (Long old : index.values()) {
+                        if (old < snapshotRecords) {
+                            newSlots[i++] = moved[(int) (long) old];
+                        } else {
+                            target.ensureCapacity(offset(next + 1));
+                            target.putBytes(offset(next), arena.getBytes(offset(old), recordBytes));
+                            newSlots[i++] = next++;
+                        }
+                    }
+                    writeHeader(target, next);
+                    target.force();
+                    target.close();
+
+                    Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    arena.close();
+                    try {
+                        arena = new MappedArena(file, chunkBytes);
+                    } catch (IOException e) {
+                        closed = true;
+                        index.clear();
+                        size = 0;
+                        lock.release();
+                        lockChannel.close();
+                        throw e;
+                    }
+                    i = 0;
+                    for (Map.Entry<Hash, Long> entry : index.entrySet()) {
+                        // Replacing the value doesn't count as an access, so the order is kept
+                        entry.setValue(newSlots[i++]);
+                    }
+                    records = next;
+                    logger.info("Compacted embedding cache {} from {} to {} records in {} ms",
+                            file, before, records, (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // A cache closed meanwhile fails the copy; otherwise the old log stays in use
+            if (!isClosed()) {
+                logger.warn("Could not compact embedding cache {}: {}", file, e.getMessage());
+            }
+        } finally {
+            synchronized (this) {
+                compacting = false;
+            }
+            if (compacted != null) {
+                try {
+                    Files.deleteIfExists(compacted);
+                } catch (IOException e) {
+                    logger.warn("Could not delete {}: {}", compacted, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long offset(long slot) {
+        return headerBytes + slot * recordBytes;
+    }
+
+    private record Hash(long high, long low) {
+
+        static Hash of(String text) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(digest);
+                return new Hash(buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                // Every JRE is required to provide SHA-256
+                throw new IllegalStateException(e);
+            }
+        }
+
+        static Hash read(MappedArena arena, long offset) {
+            return new Hash(arena.getLong(offset), arena.getLong(offset + Long.BYTES));
+        }
+
+        void write(MappedArena arena, long offset) {
+            arena.putLong(offset, high);
+            arena.putLong(offset + Long.BYTES, low);
+        }
+    }
+}
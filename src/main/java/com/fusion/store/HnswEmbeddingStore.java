@@ -0,0 +1,815 @@
+package com.fusion.store;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingSearchResult;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * In-process approximate nearest-neighbour store backed by an HNSW graph (Malkov and Yashunin).
+ * Vectors, graph links and segment payloads live in memory-mapped files under one directory, so the
+ * index is off-heap and survives restarts without a rebuild. Inserts may run concurrently: neighbour
+ * lists are guarded by striped locks and only inserts that raise the top level are serialized.
+ * Scores use cosine similarity and match PgVectorEmbeddingStore, i.e. (1 + cos) / 2.
+ * Removed entries are tombstoned; they still route searches but are never returned.
+ */
+public class HnswEmbeddingStore implements EmbeddingStore<TextSegment>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(HnswEmbeddingStore.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    private static final int MAGIC = 0x484e5357; // "HNSW"
+    private static final int VERSION = 1;
+
+    // Header file layout
+    private static final int META_MAGIC = 0;
+    private static final int META_VERSION = 4;
+    private static final int META_DIMENSION = 8;
+    private static final int META_M = 12;
+    private static final int META_NODE_COUNT = 16;
+    private static final int META_ENTRY = 24;
+    private static final int META_UPPER_END = 32;
+    private static final int META_PAYLOAD_END = 40;
+    private static final int META_BYTES = 64;
+
+    // Node record layout, followed by the level-0 link count and up to 2*M links
+    private static final int NODE_ID_MSB = 0;
+    private static final int NODE_ID_LSB = 8;
+    private static final int NODE_PAYLOAD_OFFSET = 16;
+    private static final int NODE_PAYLOAD_LENGTH = 24;
+    private static final int NODE_LEVEL = 28;
+    private static final int NODE_UPPER_OFFSET = 32;
+    private static final int NODE_DELETED = 40;
+    private static final int NODE_LINKS = 44;
+
+    private static final int NODES_PER_CHUNK = 1 << 16;
+    private static final long UPPER_CHUNK_BYTES = 16L << 20;
+    private static final long PAYLOAD_CHUNK_BYTES = 64L << 20;
+    private static final int LOCK_STRIPES = 4096;
+    private static final int MAX_LEVEL = 16;
+    private static final long EMPTY = -1L;
+
+    private final Path directory;
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private volatile int efSearch;
+    private final double levelMultiplier;
+
+    private final int nodeBytes;
+    private final int vectorBytes;
+    private final int upperLevelBytes;
+
+    private final MappedArena meta;
+    private final MappedArena nodes;
+    private final MappedArena vectors;
+    private final MappedArena upper;
+    private final MappedArena payloads;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Held for the whole insert by inserts that raise the top level of the graph
+    private final ReentrantLock entryLock = new ReentrantLock();
+    // Write-held only while the store is cleared
+    private final ReentrantReadWriteLock structureLock = new ReentrantReadWriteLock();
+    private final ThreadLocal<VisitedSet> visitedSets = ThreadLocal.withInitial(VisitedSet::new);
+
+    // Top level in the high 32 bits and entry node in the low 32, so both are read together; EMPTY if none
+    private volatile long entry;
+    private volatile int nodeCount;
+    private long upperEnd;
+    private long payloadEnd;
+
+    private HnswEmbeddingStore(Builder builder) throws IOException {
+        this.directory = builder.path;
+        this.dimension = builder.dimension;
+        this.m = builder.m;
+        this.maxM0 = 2 * builder.m;
+        this.efConstruction = builder.efConstruction;
+        this.efSearch = builder.efSearch;
+        this.levelMultiplier = 1.0 / Math.log(builder.m);
+
+        this.nodeBytes = NODE_LINKS + (1 + maxM0) * Integer.BYTES;
+        this.vectorBytes = dimension * Float.BYTES;
+        this.upperLevelBytes = (1 + m) * Integer.BYTES;
+
+        Files.createDirectories(directory);
+        this.meta = new MappedArena(directory.resolve("hnsw.meta"), META_BYTES);
+        this.nodes = new MappedArena(directory.resolve("hnsw.nodes"), (long) NODES_PER_CHUNK * nodeBytes);
+        this.vectors = new MappedArena(directory.resolve("hnsw.vectors"), (long) NODES_PER_CHUNK * vectorBytes);
+        this.upper = new MappedArena(directory.resolve("hnsw.upper"), UPPER_CHUNK_BYTES);
+        this.payloads = new MappedArena(directory.resolve("hnsw.payload"), PAYLOAD_CHUNK_BYTES);
+
+        meta.ensureCapacity(META_BYTES);
+        if (meta.getInt(META_MAGIC) == MAGIC) {
+            if (meta.getInt(META_VERSION) != VERSION || meta.getInt(META_DIMENSION) != dimension || meta.getInt(META_M) != m) {
+                throw new IllegalStateException("HNSW index in " + directory + " was built with dimension "
+                        + meta.getInt(META_DIMENSION) + " and M " + meta.getInt(META_M)
+                        + ", not dimension " + dimension + " and M " + m);
+            }
+            this.nodeCount = meta.getInt(META_NODE_COUNT);
+            this.entry = meta.getLong(META_ENTRY);
+            this.upperEnd = meta.getLong(META_UPPER_END);
+            this.payloadEnd = meta.getLong(META_PAYLOAD_END);
+            logger.info("Opened HNSW index in {} with {} nodes", directory, nodeCount);
+        } else {
+            reset();
+            meta.putInt(META_VERSION, VERSION);
+            meta.putInt(META_DIMENSION, dimension);
+            meta.putInt(META_M, m);
+            // Written last, so a header that was never completed is initialized again on the next start
+            meta.putInt(META_MAGIC, MAGIC);
+            logger.info("Created HNSW index in {} with dimension: {}, M: {}, efConstruction: {}", directory, dimension, m, efConstruction);
+        }
+
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return nodeCount;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    // Trades recall for latency at query time; takes effect for the next search
+    public void setEfSearch(int efSearch) {
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("efSearch must be positive: " + efSearch);
+        }
+        this.efSearch = efSearch;
+    }
+
+    @Override
+    public String add(Embedding embedding) {
+        String id = UUID.randomUUID().toString();
+        add(id, embedding);
+        return id;
+    }
+
+    @Override
+    public void add(String id, Embedding embedding) {
+        insert(UUID.fromString(id), embedding.vector(), null);
+    }
+
+    @Override
+    public String add(Embedding embedding, TextSegment segment) {
+        UUID id = UUID.randomUUID();
+        insert(id, embedding.vector(), segment);
+        return id.toString();
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings) {
+        List<String> ids = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            ids.add(add(embedding));
+        }
+        return ids;
+    }
+
+    @Override
+    public List<String> addAll(List<Embedding> embeddings, List<TextSegment> segments) {
+        if (segments.size() != embeddings.size()) {
+            throw new IllegalArgumentException("The number of embeddings and segments must match");
+        }
+        List<String> ids = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            ids.add(add(embeddings.get(i), segments.get(i)));
+        }
+        return ids;
+    }
+
+    @Override
+    public void addAll(List<String> ids, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (ids.size() != embeddings.size() || (segments != null && segments.size() != embeddings.size())) {
+            throw new IllegalArgumentException("The number of ids, embeddings and segments must match");
+        }
+        for (int i = 0; i < embeddings.size(); i++) {
+            insert(UUID.fromString(ids.get(i)), embeddings.get(i).vector(), segments == null ? null : segments.get(i));
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> ids) {
+        Set<UUID> targets = new HashSet<>();
+        for (String id : ids) {
+            targets.add(UUID.fromString(id));
+        }
+        tombstone(node -> targets.contains(idOf(node)));
+    }
+
+    @Override
+    public void removeAll(Filter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter must not be null; use removeAll() to remove every entry");
+        }
+        tombstone(node -> {
+            TextSegment segment = segmentOf(node);
+            return segment != null && filter.test(segment.metadata());
+        });
+    }
+
+    // Empties the index; the files keep their size and are reused
+    @Override
+    public void removeAll() {
+        structureLock.writeLock().lock();
+        try {
+            reset();
+            logger.info("Cleared HNSW index in {}", directory);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request) {
+        return search(request, efSearch);
+    }
+
+    // Search with a beam width for this request only
+    public EmbeddingSearchResult<TextSegment> search(EmbeddingSearchRequest request, int efSearch) {
+        if (efSearch <= 0) {
+            throw new IllegalArgumentException("efSearch must be positive: " + efSearch);
+        }
+        float[] query = normalize(request.queryEmbedding().vector().clone());
+        int maxResults = request.maxResults();
+        Filter filter = request.filter();
+        double minScore = request.minScore();
+
+        structureLock.readLock().lock();
+        try {
+            long current = entry;
+            if (current == EMPTY) {
+                return new EmbeddingSearchResult<>(new ArrayList<>());
+            }
+            int entryPoint = greedyDescent(query, (int) current, (int) (current >>> 32), 0);
+
+            // Widen the beam when tombstones or the filter leave fewer than maxResults matches
+            int ef = Math.max(efSearch, maxResults);
+            while (true) {
+                NodeHeap results = searchLayer(query, entryPoint, ef, 0);
+                int count = results.size();
+                float[] distances = new float[count];
+                int[] candidates = new int[count];
+                results.drainAscending(distances, candidates);
+
+                List<EmbeddingMatch<TextSegment>> matches = new ArrayList<>(maxResults);
+                boolean belowMinScore = false;
+                for (int i = 0; i < count && matches.size() < maxResults; i++) {
+                    double score = (2 - distances[i]) / 2;
+                    if (score < minScore) {
+                        belowMinScore = true;
+                        break;
+                    }
+                    int node = candidates[i];
+                    if (isDeleted(node)) {
+                        continue;
+                    }
+                    TextSegment segment = segmentOf(node);
+                    if (filter != null && (segment == null || !filter.test(segment.metadata()))) {
+                        continue;
+                    }
+                    matches.add(new EmbeddingMatch<>(score, idOf(node).toString(), null, segment));
+                }
+                if (matches.size() >= maxResults || belowMinScore || ef >= nodeCount) {
+                    return new EmbeddingSearchResult<>(matches);
+                }
+                ef = Math.min(ef * 4, nodeCount);
+            }
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Flushes all mapped files to disk
+    public void flush() {
+        meta.force();
+        nodes.force();
+        vectors.force();
+        upper.force();
+        payloads.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        structureLock.writeLock().lock();
+        try {
+            meta.close();
+            nodes.close();
+            vectors.close();
+            upper.close();
+            payloads.close();
+            logger.info("Closed HNSW index in {} with {} nodes", directory, nodeCount);
+        } finally {
+            structureLock.writeLock().unlock();
+        }
+    }
+
+    private void insert(UUID id, float[] vector, TextSegment segment) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + dimension + " but got " + vector.length);
+        }
+        float[] query = normalize(vector.clone());
+        byte[] payload = encode(segment);
+        int level = Math.min((int) (-Math.log(1.0 - ThreadLocalRandom.current().nextDouble()) * levelMultiplier), MAX_LEVEL);
+
+        structureLock.readLock().lock();
+        try {
+            int node = allocate(id, query, level, payload);
+            link(node, query, level);
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    // Reserves the records of a new node and writes everything but its links
+    private synchronized int allocate(UUID id, float[] vector, int level, byte[] payload) {
+        if (payload.length > PAYLOAD_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Segment payload too large for the HNSW store: " + payload.length + " bytes");
+        }
+        int node = nodeCount;
+        if (node == Integer.MAX_VALUE) {
+            throw new IllegalStateException("HNSW index in " + directory + " is full");
+        }
+        long record = (long) node * nodeBytes;
+        nodes.ensureCapacity(record + nodeBytes);
+        vectors.ensureCapacity((long) (node + 1) * vectorBytes);
+        vectors.putFloats((long) node * vectorBytes, vector);
+
+        long payloadOffset = reserve(payloads, payloadEnd, payload.length);
+        payloadEnd = payloadOffset + payload.length;
+        payloads.putBytes(payloadOffset, payload);
+
+        long upperOffset = -1L;
+        if (level > 0) {
+            upperOffset = reserve(upper, upperEnd, (long) level * upperLevelBytes);
+            upperEnd = upperOffset + (long) level * upperLevelBytes;
+            for (int l = 0; l < level; l++) {
+                upper.putInt(upperOffset + (long) l * upperLevelBytes, 0);
+            }
+        }
+
+        nodes.putLong(record + NODE_ID_MSB, id.getMostSignificantBits());
+        nodes.putLong(record + NODE_ID_LSB, id.getLeastSignificantBits());
+        nodes.putLong(record + NODE_PAYLOAD_OFFSET, payloadOffset);
+        nodes.putInt(record + NODE_PAYLOAD_LENGTH, payload.length);
+        nodes.putInt(record + NODE_LEVEL, level);
+        nodes.putLong(record + NODE_UPPER_OFFSET, upperOffset);
+        nodes.putInt(record + NODE_DELETED, 0);
+        nodes.putInt(record + NODE_LINKS, 0);
+
+        nodeCount = node + 1;
+        meta.putInt(META_NODE_COUNT, nodeCount);
+        meta.putLong(META_UPPER_END, upperEnd);
+        meta.putLong(META_PAYLOAD_END, payloadEnd);
+        return node;
+    }
+
+    // Start offset of a length-byte record at or after end that doesn't cross a chunk boundary
+    private static long reserve(MappedArena arena, long end, long length) {
+        long chunk = arena.chunkBytes();
+        long offset = end % chunk + length > chunk ? (end / chunk + 1) * chunk : end;
+        arena.ensureCapacity(offset + length);
+        return offset;
+    }
+
+    private void link(int node, float[] vector, int level) {
+        entryLock.lock();
+        boolean raisesTop = true;
+        try {
+            long current = entry;
+            if (current == EMPTY) {
+                publishEntry(node, level);
+                return;
+            }
+            int top = (int) (current >>> 32);
+            if (level <= top) {
+                raisesTop = false;
+                entryLock.unlock();
+            }
+
+            int entryPoint = greedyDescent(vector, (int) current, top, level);
+            int[] buffer = new int[maxM0 + 1];
+            for (int l = Math.min(level, top); l >= 0; l--) {
+                NodeHeap results = searchLayer(vector, entryPoint, efConstruction, l);
+                int count = results.size();
+                float[] distances = new float[count];
+                int[] candidates = new int[count];
+                results.drainAscending(distances, candidates);
+                entryPoint = candidates[0];
+
+                int selected = selectNeighbors(distances, candidates, count, m, buffer);
+                synchronized (lockFor(node)) {
+                    writeLinks(node, l, buffer, selected);
+                }
+                for (int i = 0; i < selected; i++) {
+                    addLink(buffer[i], node, l);
+                }
+            }
+
+            if (raisesTop) {
+                publishEntry(node, level);
+            }
+        } finally {
+            if (raisesTop) {
+                entryLock.unlock();
+            }
+        }
+    }
+
+    private synchronized void publishEntry(int node, int level) {
+        entry = ((long) level << 32) | node;
+        meta.putLong(META_ENTRY, entry);
+    }
+
+    // Follows the closest neighbour on each level from top down to (but excluding) level floor
+    private int greedyDescent(float[] query, int entryPoint, int top, int floor) {
+        int current = entryPoint;
+        float currentDistance = distance(query, current);
+        int[] buffer = new int[maxM0];
+        for (int l = top; l > floor; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int count = readLinks(current, l, buffer);
+                for (int i = 0; i < count; i++) {
+                    float d = distance(query, buffer[i]);
+                    if (d < currentDistance) {
+                        currentDistance = d;
+                        current = buffer[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    // Beam search on one level; returns a max-heap of the ef closest nodes found
+    private NodeHeap searchLayer(float[] query, int entryPoint, int ef, int level) {
+        VisitedSet visited = visitedSets.get();
+        visited.reset(nodeCount);
+        NodeHeap candidates = NodeHeap.min(ef * 2);
+        NodeHeap results = NodeHeap.max(ef + 1);
+        int[] buffer = new int[maxM0];
+
+        float d = distance(query, entryPoint);
+        visited.visit(entryPoint);
+        candidates.push(d, entryPoint);
+        results.push(d, entryPoint);
+
+        while (!candidates.isEmpty()) {
+            float candidateDistance = candidates.topDistance();
+            if (results.size() >= ef && candidateDistance > results.topDistance()) {
+                break;
+            }
+            int candidate = candidates.topNode();
+            candidates.pop();
+
+            int count = readLinks(candidate, level, buffer);
+            for (int i = 0; i < count; i++) {
+                int neighbour = buffer[i];
+                if (!visited.visit(neighbour)) {
+                    continue;
+                }
+                float neighbourDistance = distance(query, neighbour);
+                if (results.size() < ef || neighbourDistance < results.topDistance()) {
+                    candidates.push(neighbourDistance, neighbour);
+                    results.push(neighbourDistance, neighbour);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Keeps a candidate only if it is closer to the base than to every neighbour already kept,
+    // which spreads links across directions instead of clustering them. Candidates must be sorted.
+    private int selectNeighbors(float[] distances, int[] candidates, int count, int limit, int[] selected) {
+        int kept = 0;
+        for (int i = 0; i < count && kept < limit; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < kept; j++) {
+                if (distanceBetween(candidates[i], selected[j]) < distances[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[kept++] = candidates[i];
+            }
+        }
+        return kept;
+    }
+
+    // Adds a back link from neighbour to node, pruning the neighbour's list when it is full
+    private void addLink(int neighbour, int node, int level) {
+        int limit = level == 0 ? maxM0 : m;
+        MappedArena arena = level == 0 ? nodes : upper;
+        synchronized (lockFor(neighbour)) {
+            long offset = linksOffset(neighbour, level);
+            int count = arena.getInt(offset);
+            for (int i = 0; i < count; i++) {
+                if (arena.getInt(offset + Integer.BYTES * (i + 1L)) == node) {
+                    return;
+                }
+            }
+            if (count < limit) {
+                arena.putInt(offset + Integer.BYTES * (count + 1L), node);
+                arena.putInt(offset, count + 1);
+                return;
+            }
+
+            float[] distances = new float[count + 1];
+            int[] candidates = new int[count + 1];
+            for (int i = 0; i < count; i++) {
+                candidates[i] = arena.getInt(offset + Integer.BYTES * (i + 1L));
+                distances[i] = distanceBetween(neighbour, candidates[i]);
+            }
+            candidates[count] = node;
+            distances[count] = distanceBetween(neighbour, node);
+            sortByDistance(distances, candidates, count + 1);
+
+            int[] selected = new int[limit];
+            int kept = selectNeighbors(distances, candidates, count + 1, limit, selected);
+            writeLinks(neighbour, level, selected, kept);
+        }
+    }
+
+    // Caller holds the node's lock
+    private void writeLinks(int node, int level, int[] links, int count) {
+        MappedArena arena = level == 0 ? nodes : upper;
+        long offset = linksOffset(node, level);
+        for (int i = 0; i < count; i++) {
+            arena.putInt(offset + Integer.BYTES * (i + 1L), links[i]);
+        }
+        arena.putInt(offset, count);
+    }
+
+    private int readLinks(int node, int level, int[] buffer) {
+        MappedArena arena = level == 0 ? nodes : upper;
+        synchronized (lockFor(node)) {
+            long offset = linksOffset(node, level);
+            int count = arena.getInt(offset);
+            for (int i = 0; i < count; i++) {
+                buffer[i] = arena.getInt(offset + Integer.BYTES * (i + 1L));
+            }
+            return count;
+        }
+    }
+
+    private long linksOffset(int node, int level) {
+        long record = (long) node * nodeBytes;
+        if (level == 0) {
+            return record + NODE_LINKS;
+        }
+        return nodes.getLong(record + NODE_UPPER_OFFSET) + (long) (level - 1) * upperLevelBytes;
+    }
+
+    private Object lockFor(int node) {
+        return locks[node & (LOCK_STRIPES - 1)];
+    }
+
+    // Cosine distance; stored vectors and queries are unit length
+    private float distance(float[] query, int node) {
+        long offset = (long) node * vectorBytes;
+        MappedByteBuffer chunk = vectors.chunk(offset);
+        int position = vectors.position(offset);
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * chunk.getFloat(position + i * Float.BYTES);
+        }
+        return 1f - dot;
+    }
+
+    private float distanceBetween(int a, int b) {
+        long offsetA = (long) a * vectorBytes;
+        long offsetB = (long) b * vectorBytes;
+        MappedByteBuffer chunkA = vectors.chunk(offsetA);
+        MappedByteBuffer chunkB = vectors.chunk(offsetB);
+        int positionA = vectors.position(offsetA);
+        int positionB = vectors.position(offsetB);
+        float dot = 0f;
+        for (int i = 0; i < dimension; i++) {
+            dot += chunkA.getFloat(positionA + i * Float.BYTES) * chunkB.getFloat(positionB + i * Float.BYTES);
+        }
+        return 1f - dot;
+    }
+
+    private static void sortByDistance(float[] distances, int[] nodes, int count) {
+        for (int i = 1; i < count; i++) {
+            float distance = distances[i];
+            int node = nodes[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > distance) {
+                distances[j + 1] = distances[j];
+                nodes[j + 1] = nodes[j];
+                j--;
+            }
+            distances[j + 1] = distance;
+            nodes[j + 1] = node;
+        }
+    }
+
+    private void tombstone(IntPredicate matches) {
+        structureLock.readLock().lock();
+        try {
+            int removed = 0;
+            int count = nodeCount;
+            for (int node = 0; node < count; node++) {
+                if (!isDeleted(node) && matches.test(node)) {
+                    nodes.putInt((long) node * nodeBytes + NODE_DELETED, 1);
+                    removed++;
+                }
+            }
+            logger.info("Removed {} entries from HNSW index in {}", removed, directory);
+        } finally {
+            structureLock.readLock().unlock();
+        }
+    }
+
+    private boolean isDeleted(int node) {
+        return nodes.getInt((long) node * nodeBytes + NODE_DELETED) != 0;
+    }
+
+    private UUID idOf(int node) {
+        long record = (long) node * nodeBytes;
+        return new UUID(nodes.getLong(record + NODE_ID_MSB), nodes.getLong(record + NODE_ID_LSB));
+    }
+
+    private TextSegment segmentOf(int node) {
+        long record = (long) node * nodeBytes;
+        int length = nodes.getInt(record + NODE_PAYLOAD_LENGTH);
+        if (length == 0) {
+            return null;
+        }
+        byte[] payload = payloads.getBytes(nodes.getLong(record + NODE_PAYLOAD_OFFSET), length);
+        try {
+            Map<String, Object> values = objectMapper.readValue(payload, PAYLOAD_TYPE);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = (Map<String, Object>) values.get("metadata");
+            return TextSegment.from((String) values.get("text"), metadata == null ? new Metadata() : new Metadata(metadata));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt payload for node " + node + " in " + directory, e);
+        }
+    }
+
+    private static byte[] encode(TextSegment segment) {
+        if (segment == null) {
+            return new byte[0];
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("text", segment.text());
+        values.put("metadata", segment.metadata().toMap());
+        try {
+            return objectMapper.writeValueAsBytes(values);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not serialize segment", e);
+        }
+    }
+
+    private synchronized void reset() {
+        nodeCount = 0;
+        entry = EMPTY;
+        upperEnd = 0L;
+        payloadEnd = 0L;
+        meta.putInt(META_NODE_COUNT, 0);
+        meta.putLong(META_ENTRY, EMPTY);
+        meta.putLong(META_UPPER_END, 0L);
+        meta.putLong(META_PAYLOAD_END, 0L);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0.0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) (vector[i] / norm);
+            }
+        }
+        return vector;
+    }
+
+    // Epoch-stamped visited marks, reused across searches on the same thread
+    private static final class VisitedSet {
+
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            if (++epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        // Marks the node and returns true if it had not been visited yet
+        boolean visit(int node) {
+            if (node >= marks.length) {
+                // Nodes inserted concurrently with this search
+                marks = Arrays.copyOf(marks, Math.max(node + 1, marks.length * 2));
+            }
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+
+    public static class Builder {
+
+        private Path path;
+        private Integer dimension;
+        private int m = 16;
+        private int efConstruction = 200;
+        private int efSearch = 64;
+
+        public Builder path(Path path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder dimension(int dimension) {
+            this.dimension = dimension;
+            return this;
+        }
+
+        // Links per node on the upper levels; level 0 keeps twice as many
+        public Builder m(int m) {
+            this.m = m;
+            return this;
+        }
+
+        public Builder efConstruction(int efConstruction) {
+            this.efConstruction = efConstruction;
+            return this;
+        }
+
+        public Builder efSearch(int efSearch) {
+            this.efSearch = efSearch;
+            return this;
+        }
+
+        public HnswEmbeddingStore build() {
+            if (path == null || dimension == null) {
+                throw new IllegalArgumentException("path and dimension are required");
+            }
+            if (m < 2 || efConstruction <= 0 || efSearch <= 0) {
+                throw new IllegalArgumentException("M must be at least 2 and ef values positive");
+            }
+            try {
+                return new HnswEmbeddingStore(this);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open HNSW index in " + path, e);
+            }
+        }
+    }
+}
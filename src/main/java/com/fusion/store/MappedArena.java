@@ -0,0 +1,121 @@
+package com.fusion.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * File-backed off-heap memory, mapped in fixed-size chunks that are added as the arena grows.
+ * Callers lay out their records so that none crosses a chunk boundary; every accessor addresses a
+ * single chunk. Memory visibility between threads is the caller's responsibility.
+ */
+final class MappedArena implements Closeable {
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long chunkBytes;
+    private volatile MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    MappedArena(Path file, long chunkBytes) throws IOException {
+        if (chunkBytes <= 0 || chunkBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and 2^31-1 bytes: " + chunkBytes);
+        }
+        this.file = file;
+        this.chunkBytes = chunkBytes;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ensureCapacity(channel.size());
+    }
+
+    long chunkBytes() {
+        return chunkBytes;
+    }
+
+    // Maps enough chunks to address the first bytes of the arena, growing the file if needed
+    synchronized void ensureCapacity(long bytes) {
+        int needed = (int) ((bytes + chunkBytes - 1) / chunkBytes);
+        MappedByteBuffer[] current = chunks;
+        if (needed <= current.length) {
+            return;
+        }
+        MappedByteBuffer[] grown = Arrays.copyOf(current, needed);
+        try {
+            for (int i = current.length; i < needed; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * chunkBytes, chunkBytes);
+                grown[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map " + file, e);
+        }
+        chunks = grown;
+    }
+
+    MappedByteBuffer chunk(long offset) {
+        return chunks[(int) (offset / chunkBytes)];
+    }
+
+    int position(long offset) {
+        return (int) (offset % chunkBytes);
+    }
+
+    int getInt(long offset) {
+        return chunk(offset).getInt(position(offset));
+    }
+
+    void putInt(long offset, int value) {
+        chunk(offset).putInt(position(offset), value);
+    }
+
+    long getLong(long offset) {
+        return chunk(offset).getLong(position(offset));
+    }
+
+    void putLong(long offset, long value) {
+        chunk(offset).putLong(position(offset), value);
+    }
+
+    void putFloats(long offset, float[] values) {
+        MappedByteBuffer chunk = chunk(offset);
+        int position = position(offset);
+        for (int i = 0; i < values.length; i++) {
+            chunk.putFloat(position + i * Float.BYTES, values[i]);
+        }
+    }
+
+    void getFloats(long offset, float[] target) {
+        MappedByteBuffer chunk = chunk(offset);
+        int position = position(offset);
+        for (int i = 0; i < target.length; i++) {
+            target[i] = chunk.getFloat(position + i * Float.BYTES);
+        }
+    }
+
+    void putBytes(long offset, byte[] bytes) {
+        chunk(offset).put(position(offset), bytes);
+    }
+
+    byte[] getBytes(long offset, int length) {
+        byte[] bytes = new byte[length];
+        chunk(offset).get(position(offset), bytes);
+        return bytes;
+    }
+
+    // Flushes dirty pages to the file
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        chunks = new MappedByteBuffer[0];
+        channel.close();
+    }
+}
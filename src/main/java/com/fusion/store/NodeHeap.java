@@ -0,0 +1,114 @@
+package com.fusion.store;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (distance, node) pairs on primitive arrays, so graph searches don't box every candidate.
+ * A min-heap keeps the closest node on top, a max-heap the farthest.
+ */
+final class NodeHeap {
+
+    private final boolean max;
+    private float[] distances;
+    private int[] nodes;
+    private int size;
+
+    NodeHeap(int capacity, boolean max) {
+        this.max = max;
+        this.distances = new float[Math.max(capacity, 4)];
+        this.nodes = new int[Math.max(capacity, 4)];
+    }
+
+    static NodeHeap min(int capacity) {
+        return new NodeHeap(capacity, false);
+    }
+
+    static NodeHeap max(int capacity) {
+        return new NodeHeap(capacity, true);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    float topDistance() {
+        return distances[0];
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    void push(float distance, int node) {
+        if (size == distances.length) {
+            distances = Arrays.copyOf(distances, size * 2);
+            nodes = Arrays.copyOf(nodes, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(distance, distances[parent])) {
+                break;
+            }
+            distances[i] = distances[parent];
+            nodes[i] = nodes[parent];
+            i = parent;
+        }
+        distances[i] = distance;
+        nodes[i] = node;
+    }
+
+    // Removes the top entry; read it with topDistance/topNode first
+    void pop() {
+        float distance = distances[--size];
+        int node = nodes[size];
+        int i = 0;
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && before(distances[right], distances[child])) {
+                child = right;
+            }
+            if (!before(distances[child], distance)) {
+                break;
+            }
+            distances[i] = distances[child];
+            nodes[i] = nodes[child];
+            i = child;
+        }
+        distances[i] = distance;
+        nodes[i] = node;
+    }
+
+    // Drains the heap into parallel arrays sorted by ascending distance
+    int drainAscending(float[] distanceOut, int[] nodeOut) {
+        int count = size;
+        if (max) {
+            for (int i = count - 1; i >= 0; i--) {
+                distanceOut[i] = topDistance();
+                nodeOut[i] = topNode();
+                pop();
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                distanceOut[i] = topDistance();
+                nodeOut[i] = topNode();
+                pop();
+            }
+        }
+        return count;
+    }
+
+    private boolean before(float a, float b) {
+        return max ? a > b : a < b;
+    }
+}
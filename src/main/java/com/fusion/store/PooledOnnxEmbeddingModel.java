@@ -0,0 +1,334 @@
+package com.fusion.store;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import com.fusion.utils.LengthBuckets;
+import com.fusion.utils.ModelFiles;
+import com.fusion.utils.TokenCounter;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.PoolingMode;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sentence embedding model that owns a fixed pool of ONNX Runtime sessions over one model file.
+ * Each call borrows a free session for the whole batch and returns it afterwards, so concurrent callers
+ * run on separate sessions instead of contending for one, and each session is limited to its own
+ * intra-/inter-op thread budget. Sized as {@code sessions * intraOpThreads <= cores}, throughput grows with
+ * the number of callers up to the core count. Every session holds its own copy of the weights.
+ *
+ * <p>Texts are truncated to {@code maxSequenceLength} tokens; the output is pooled (mean or CLS) and
+ * L2-normalized like the langchain4j in-process models. Each call is tokenized up front and run in
+ * batches of texts of similar length, so little of each padded tensor is padding.
+ */
+public class PooledOnnxEmbeddingModel implements EmbeddingModel, TokenCounter, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledOnnxEmbeddingModel.class);
+
+    private static final String INPUT_IDS = "input_ids";
+    private static final String ATTENTION_MASK = "attention_mask";
+    private static final String TOKEN_TYPE_IDS = "token_type_ids";
+
+    // Where the langchain4j all-MiniLM-L6-v2 jar keeps its model
+    private static final String ALL_MINILM_L6_V2_MODEL = "classpath:all-minilm-l6-v2.onnx";
+    private static final String ALL_MINILM_L6_V2_TOKENIZER = "classpath:all-minilm-l6-v2-tokenizer.json";
+
+    // sessions: 0 means one per intraOpThreads available cores
+    public record Options(int sessions, int intraOpThreads, int interOpThreads, OrtSession.SessionOptions.OptLevel optimizationLevel,
+                          boolean memoryArena, int maxSequenceLength, int batchSize) {
+
+        public int sessionCount() {
+            return sessions > 0 ? sessions : Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, intraOpThreads));
+        }
+    }
+
+    // How busy the pool is; a growing wait time means callers queue for sessions.
+    // tokens / paddedTokens are the real and the padded sizes of the input tensors run so far.
+    public record PoolStatistics(int sessions, int busy, long batches, long segments, long waitMillis,
+                                 long tokens, long paddedTokens) {
+
+        public double paddingRatio() {
+            return LengthBuckets.paddingRatio(tokens, paddedTokens);
+        }
+    }
+
+    private final OrtEnvironment environment = OrtEnvironment.getEnvironment();
+    private final HuggingFaceTokenizer tokenizer;
+    private final OrtSession.SessionOptions sessionOptions;
+    private final List<OrtSession> sessions = new ArrayList<>();
+    private final BlockingQueue<OrtSession> idle;
+    private final PoolingMode pooling;
+    private final int batchSize;
+    private final boolean tokenTypeIds;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder segments = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder paddedTokens = new LongAdder();
+
+    public PooledOnnxEmbeddingModel(Path modelPath, Path tokenizerPath, PoolingMode pooling, Options options) throws IOException {
+        this.pooling = pooling;
+        this.batchSize = Math.max(1, options.batchSize());
+        int count = options.sessionCount();
+        this.idle = new ArrayBlockingQueue<>(count);
+
+        Map<String, String> tokenizerOptions = new HashMap<>();
+        tokenizerOptions.put("truncation", "true");
+        tokenizerOptions.put("padding", "false");
+        tokenizerOptions.put("maxLength", String.valueOf(options.maxSequenceLength()));
+        this.tokenizer = HuggingFaceTokenizer.newInstance(tokenizerPath, tokenizerOptions);
+
+        try {
+            sessionOptions = new OrtSession.SessionOptions();
+            sessionOptions.setIntraOpNumThreads(options.intraOpThreads());
+            sessionOptions.setInterOpNumThreads(options.interOpThreads());
+            // Independent graph branches only run concurrently in parallel mode
+            sessionOptions.setExecutionMode(options.interOpThreads() > 1
+                    ? OrtSession.SessionOptions.ExecutionMode.PARALLEL : OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL);
+            sessionOptions.setOptimizationLevel(options.optimizationLevel());
+            sessionOptions.setCPUArenaAllocator(options.memoryArena());
+            for (int i = 0; i < count; i++) {
+                sessions.add(environment.createSession(modelPath.toString(), sessionOptions));
+            }
+        } catch (OrtException e) {
+            close();
+            throw new IOException("Could not load ONNX model " + modelPath, e);
+        }
+        this.tokenTypeIds = sessions.get(0).getInputNames().contains(TOKEN_TYPE_IDS);
+
+        // The first run of a session allocates and plans its buffers, so that happens here instead of under load
+        for (OrtSession session : sessions) {
+            run(session, tokenizer.batchEncode(List.of("warm-up")));
+        }
+        idle.addAll(sessions);
+        logger.info("ONNX session pool for {}: {} sessions, {} intra-op / {} inter-op threads each, {} optimization, arena {}",
+                modelPath.getFileName(), count, options.intraOpThreads(), options.interOpThreads(),
+                options.optimizationLevel(), options.memoryArena() ? "on" : "off");
+    }
+
+    // The all-MiniLM-L6-v2 model bundled with langchain4j, mean-pooled like AllMiniLmL6V2EmbeddingModel
+    public static PooledOnnxEmbeddingModel allMiniLmL6V2(Options options) throws IOException {
+        return new PooledOnnxEmbeddingModel(ModelFiles.resolve(ALL_MINILM_L6_V2_MODEL),
+                ModelFiles.resolve(ALL_MINILM_L6_V2_TOKENIZER), PoolingMode.MEAN, options);
+    }
+
+    // none, basic, extended or all
+    public static OrtSession.SessionOptions.OptLevel optimizationLevel(String name) {
+        switch (name == null ? "all" : name.trim().toLowerCase(Locale.ROOT)) {
+            case "none":
+                return OrtSession.SessionOptions.OptLevel.NO_OPT;
+            case "basic":
+                return OrtSession.SessionOptions.OptLevel.BASIC_OPT;
+            case "extended":
+                return OrtSession.SessionOptions.OptLevel.EXTENDED_OPT;
+            case "all":
+                return OrtSession.SessionOptions.OptLevel.ALL_OPT;
+            default:
+                throw new IllegalArgumentException("Unsupported optimization level: " + name + " (expected none, basic, extended or all)");
+        }
+    }
+
+    public PoolStatistics getStatistics() {
+        return new PoolStatistics(sessions.size(), sessions.size() - idle.size(), batches.sum(), segments.sum(),
+                waitNanos.sum() / 1_000_000, tokens.sum(), paddedTokens.sum());
+    }
+
+    @Override
+    public int[] count(List<String> texts) {
+        return lengths(tokenizer.batchEncode(texts));
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        if (textSegments.isEmpty()) {
+            return Response.from(new ArrayList<>());
+        }
+        List<String> texts = new ArrayList<>(textSegments.size());
+        for (TextSegment segment : textSegments) {
+            texts.add(segment.text());
+        }
+        Encoding[] encodings = tokenizer.batchEncode(texts);
+        int[] lengths = lengths(encodings);
+        Embedding[] embeddings = new Embedding[encodings.length];
+
+        long start = System.nanoTime();
+        OrtSession session;
+        try {
+            session = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an ONNX session", e);
+        }
+        waitNanos.add(System.nanoTime() - start);
+        try {
+            // Texts run in batches of similar length, at most batchSize each, and are put back in call order
+            for (int[] bucket : LengthBuckets.group(lengths, batchSize)) {
+                Encoding[] batch = new Encoding[bucket.length];
+                for (int i = 0; i < bucket.length; i++) {
+                    batch[i] = encodings[bucket[i]];
+                }
+                float[][] vectors = run(session, batch);
+                for (int i = 0; i < bucket.length; i++) {
+                    embeddings[bucket[i]] = Embedding.from(vectors[i]);
+                }
+            }
+        } finally {
+            idle.add(session);
+        }
+        return Response.from(Arrays.asList(embeddings));
+    }
+
+    private static int[] lengths(Encoding[] encodings) {
+        int[] lengths = new int[encodings.length];
+        for (int i = 0; i < encodings.length; i++) {
+            lengths[i] = encodings[i].getIds().length;
+        }
+        return lengths;
+    }
+
+    private float[][] run(OrtSession session, Encoding[] encodings) {
+        int rows = encodings.length;
+        int length = 1;
+        long realTokens = 0;
+        for (Encoding encoding : encodings) {
+            length = Math.max(length, encoding.getIds().length);
+            realTokens += encoding.getIds().length;
+        }
+
+        // Rows are right-padded with zeros to the longest one; the attention mask excludes the padding
+        LongBuffer ids = LongBuffer.allocate(rows * length);
+        LongBuffer mask = LongBuffer.allocate(rows * length);
+        LongBuffer types = LongBuffer.allocate(rows * length);
+        for (int row = 0; row < rows; row++) {
+            ids.position(row * length);
+            ids.put(encodings[row].getIds());
+            mask.position(row * length);
+            mask.put(encodings[row].getAttentionMask());
+            types.position(row * length);
+            types.put(encodings[row].getTypeIds());
+        }
+        ids.rewind();
+        mask.rewind();
+        types.rewind();
+
+        long[] shape = {rows, length};
+        Map<String, OnnxTensor> inputs = new HashMap<>();
+        try {
+            inputs.put(INPUT_IDS, OnnxTensor.createTensor(environment, ids, shape));
+            inputs.put(ATTENTION_MASK, OnnxTensor.createTensor(environment, mask, shape));
+            if (tokenTypeIds) {
+                inputs.put(TOKEN_TYPE_IDS, OnnxTensor.createTensor(environment, types, shape));
+            }
+            try (OrtSession.Result result = session.run(inputs)) {
+                OnnxTensor output = (OnnxTensor) result.get(0);
+                long[] outputShape = output.getInfo().getShape();
+                FloatBuffer values = output.getFloatBuffer();
+                float[][] vectors = outputShape.length == 2
+                        ? pooled(values, rows, (int) outputShape[1])
+                        : pool(values, mask, rows, length, (int) outputShape[2]);
+                for (float[] vector : vectors) {
+                    normalize(vector);
+                }
+                batches.increment();
+                segments.add(rows);
+                tokens.add(realTokens);
+                paddedTokens.add((long) rows * length);
+                return vectors;
+            }
+        } catch (OrtException e) {
+            throw new IllegalStateException("ONNX inference failed: " + e.getMessage(), e);
+        } finally {
+            for (OnnxTensor tensor : inputs.values()) {
+                tensor.close();
+            }
+        }
+    }
+
+    // Models exported with a pooling head already return one vector per row
+    private static float[][] pooled(FloatBuffer values, int rows, int hidden) {
+        float[][] vectors = new float[rows][hidden];
+        for (float[] vector : vectors) {
+            values.get(vector);
+        }
+        return vectors;
+    }
+
+    // Pools the token states [rows, length, hidden] into one vector per row
+    private float[][] pool(FloatBuffer values, LongBuffer mask, int rows, int length, int hidden) {
+        float[][] vectors = new float[rows][hidden];
+        for (int row = 0; row < rows; row++) {
+            float[] vector = vectors[row];
+            if (pooling == PoolingMode.CLS) {
+                values.position(row * length * hidden);
+                values.get(vector);
+                continue;
+            }
+            int tokens = 0;
+            for (int t = 0; t < length; t++) {
+                if (mask.get(row * length + t) == 0) {
+                    continue;
+                }
+                int offset = (row * length + t) * hidden;
+                for (int d = 0; d < hidden; d++) {
+                    vector[d] += values.get(offset + d);
+                }
+                tokens++;
+            }
+            for (int d = 0; d < hidden; d++) {
+                vector[d] /= Math.max(1, tokens);
+            }
+        }
+        return vectors;
+    }
+
+    private static void normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (OrtSession session : sessions) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                logger.warn("Could not close an ONNX session: {}", e.getMessage());
+            }
+        }
+        sessions.clear();
+        if (sessionOptions != null) {
+            sessionOptions.close();
+        }
+        tokenizer.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.fusion.store;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Embedding model that records the duration and size of every inference call of the wrapped model
+public class TimedEmbeddingModel implements EmbeddingModel {
+
+    private final EmbeddingModel delegate;
+    private final Timer timer;
+    private final DistributionSummary batchSizes;
+
+    public TimedEmbeddingModel(EmbeddingModel delegate, Timer timer, DistributionSummary batchSizes) {
+        this.delegate = delegate;
+        this.timer = timer;
+        this.batchSizes = batchSizes;
+    }
+
+    public EmbeddingModel getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> segments) {
+        long start = System.nanoTime();
+        try {
+            return delegate.embedAll(segments);
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            batchSizes.record(segments.size());
+        }
+    }
+
+    @Override
+    public int dimension() {
+        return delegate.dimension();
+    }
+}
@@ -0,0 +1,83 @@
+package com.fusion.utils;
+
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * SHA-256 content hashes used to recognise unchanged documents and segments on re-ingestion.
+ * Every hash covers the embedding model id, so switching models invalidates all of them.
+ */
+public final class ContentHashes {
+
+    private ContentHashes() {
+    }
+
+    // Hash of the file's bytes and the metadata given with it; equal hashes mean nothing needs re-ingesting
+    public static String documentHash(String modelId, Path file, Map<String, String> metadata) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, modelId);
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 << 10];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        new TreeMap<>(metadata).forEach((key, value) -> {
+            update(digest, key);
+            update(digest, value);
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Hash of what the stored row of a segment depends on: its text and metadata, except the excluded keys
+    // (e.g. the segment's position, which shifts when earlier pages change)
+    public static String segmentHash(String modelId, TextSegment segment, Set<String> excludedKeys) {
+        MessageDigest digest = sha256();
+        update(digest, modelId);
+        update(digest, segment.text());
+        new TreeMap<>(segment.metadata().toMap()).forEach((key, value) -> {
+            if (!excludedKeys.contains(key)) {
+                update(digest, key);
+                update(digest, String.valueOf(value));
+            }
+        });
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Stable row id for the occurrence-th segment with this hash in the document
+    public static UUID segmentId(String documentKey, String segmentHash, int occurrence) {
+        return UUID.nameUUIDFromBytes((documentKey + '\0' + segmentHash + '\0' + occurrence).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Length-prefixed, so adjacent values can't run into each other
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every JRE is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
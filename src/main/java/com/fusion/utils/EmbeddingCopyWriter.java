@@ -0,0 +1,291 @@
+package com.fusion.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Streams (id, embedding, text, metadata) rows into a table with the PgVectorEmbeddingStore layout
+ * using COPY ... FROM STDIN. Rows are encoded into a buffer that is sent in large chunks; every
+ * rowsPerCopy rows the COPY is ended, which commits those rows, and the next row starts a new one.
+ * Writers on several threads are serialized onto the single COPY stream.
+ * The binary format avoids text parsing on the server; TEXT is for servers without binary COPY support.
+ */
+public class EmbeddingCopyWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCopyWriter.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final byte[] BINARY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    private static final int FLUSH_BYTES = 1 << 20;
+
+    public enum Format {
+        BINARY, TEXT;
+
+        public static Format fromConfig(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported COPY format: " + value + " (expected binary or text)");
+            }
+        }
+    }
+
+    private final String table;
+    private final CopyManager copyManager;
+    private final String sql;
+    private final Format format;
+    private final int rowsPerCopy;
+
+    private final Buffer buffer = new Buffer(FLUSH_BYTES + (64 << 10));
+    private final DataOutputStream out = new DataOutputStream(buffer);
+    private CopyIn copyIn;
+    private int rowsInCopy;
+    private long rowsWritten;
+    private final long startNanos = System.nanoTime();
+
+    public EmbeddingCopyWriter(Connection connection, String table, Format format, int rowsPerCopy) throws SQLException {
+        if (rowsPerCopy <= 0) {
+            throw new IllegalArgumentException("rowsPerCopy must be positive: " + rowsPerCopy);
+        }
+        this.table = table;
+        this.format = format;
+        this.rowsPerCopy = rowsPerCopy;
+        this.sql = "COPY " + table + " (embedding_id, embedding, text, metadata) FROM STDIN"
+                + (format == Format.BINARY ? " WITH (FORMAT binary)" : "");
+        // Each COPY commits on its own
+        connection.setAutoCommit(true);
+        this.copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+    }
+
+    // Writes one row per embedding under a new random id and returns the ids
+    public synchronized List<String> writeAll(List<Embedding> embeddings, List<TextSegment> segments) throws SQLException {
+        if (segments.size() != embeddings.size()) {
+            throw new IllegalArgumentException("The number of embeddings and segments must match");
+        }
+        List<String> ids = new ArrayList<>(embeddings.size());
+        for (int i = 0; i < embeddings.size(); i++) {
+            UUID id = UUID.randomUUID();
+            write(id, embeddings.get(i).vector(), segments.get(i));
+            ids.add(id.toString());
+        }
+        return ids;
+    }
+
+    // Writes one row per embedding under the given ids
+    public synchronized void writeAll(List<UUID> ids, List<Embedding> embeddings, List<TextSegment> segments) throws SQLException {
+        if (ids.size() != embeddings.size() || segments.size() != embeddings.size()) {
+            throw new IllegalArgumentException("The number of ids, embeddings and segments must match");
+        }
+        for (int i = 0; i < embeddings.size(); i++) {
+            write(ids.get(i), embeddings.get(i).vector(), segments.get(i));
+        }
+    }
+
+    public synchronized void write(UUID id, float[] embedding, TextSegment segment) throws SQLException {
+        // Serialize first, so a bad segment can't leave half a row in the stream
+        String text = segment == null ? null : segment.text();
+        String metadata = segment == null ? null : metadataJson(segment);
+        if (copyIn == null) {
+            startCopy();
+        }
+        try {
+            if (format == Format.BINARY) {
+                writeBinaryRow(id, embedding, text, metadata);
+            } else {
+                writeTextRow(id, embedding, text, metadata);
+            }
+        } catch (IOException e) {
+            // Only the in-memory buffer is written here
+            throw new UncheckedIOException(e);
+        }
+        rowsInCopy++;
+        rowsWritten++;
+        if (buffer.size() >= FLUSH_BYTES) {
+            flushBuffer();
+        }
+        if (rowsInCopy >= rowsPerCopy) {
+            endCopy();
+        }
+    }
+
+    public synchronized long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    public synchronized double rowsPerSecond() {
+        long elapsed = System.nanoTime() - startNanos;
+        return elapsed == 0 ? 0.0 : rowsWritten * 1_000_000_000.0 / elapsed;
+    }
+
+    // Discards the rows of the COPY in progress; rows of earlier, completed COPYs stay committed
+    public synchronized void abort() {
+        buffer.reset();
+        if (copyIn != null) {
+            try {
+                copyIn.cancelCopy();
+                rowsWritten -= rowsInCopy;
+            } catch (SQLException e) {
+                logger.warn("Could not cancel COPY into {}: {}", table, e.getMessage());
+            }
+            copyIn = null;
+            rowsInCopy = 0;
+        }
+    }
+
+    // Commits the rows of the COPY in progress
+    @Override
+    public synchronized void close() throws SQLException {
+        if (copyIn != null) {
+            endCopy();
+        }
+        logger.info("COPY wrote {} rows into {} ({} rows/sec).", rowsWritten, table, String.format("%.1f", rowsPerSecond()));
+    }
+
+    private void startCopy() throws SQLException {
+        copyIn = copyManager.copyIn(sql);
+        rowsInCopy = 0;
+        if (format == Format.BINARY) {
+            try {
+                out.write(BINARY_SIGNATURE);
+                out.writeInt(0); // flags
+                out.writeInt(0); // header extension length
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void endCopy() throws SQLException {
+        if (format == Format.BINARY) {
+            try {
+                out.writeShort(-1); // trailer
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        flushBuffer();
+        copyIn.endCopy();
+        copyIn = null;
+        rowsInCopy = 0;
+    }
+
+    private void flushBuffer() throws SQLException {
+        if (buffer.size() > 0) {
+            copyIn.writeToCopy(buffer.array(), 0, buffer.size());
+            buffer.reset();
+        }
+    }
+
+    // Binary tuple: field count, then each field as a length-prefixed value in the type's binary send format
+    private void writeBinaryRow(UUID id, float[] embedding, String text, String metadata) throws IOException {
+        out.writeShort(4);
+
+        out.writeInt(16);
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+
+        // pgvector: int16 dimension, int16 unused, then float4 values
+        out.writeInt(4 + embedding.length * Float.BYTES);
+        out.writeShort(embedding.length);
+        out.writeShort(0);
+        for (float value : embedding) {
+            out.writeFloat(value);
+        }
+
+        writeBinaryString(text);
+        writeBinaryString(metadata);
+    }
+
+    private void writeBinaryString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeTextRow(UUID id, float[] embedding, String text, String metadata) throws IOException {
+        StringBuilder row = new StringBuilder(embedding.length * 12 + 512);
+        row.append(id).append('\t').append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            row.append(embedding[i]);
+        }
+        row.append(']').append('\t');
+        appendTextField(row, text);
+        row.append('\t');
+        appendTextField(row, metadata);
+        row.append('\n');
+        out.write(row.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void appendTextField(StringBuilder row, String value) {
+        if (value == null) {
+            row.append("\\N");
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                default:
+                    row.append(c);
+            }
+        }
+    }
+
+    private static String metadataJson(TextSegment segment) {
+        try {
+            return objectMapper.writeValueAsString(segment.metadata().toMap());
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Could not serialize segment metadata", e);
+        }
+    }
+
+    // Exposes the backing array so chunks go to the driver without a copy
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        Buffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.fusion.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Read access to an export written by {@link EmbeddingExportWriter}. The vector and index columns are
+ * memory-mapped read-only, so {@link #vector(long)} is a view of the file rather than a copy and opening an
+ * export of any size costs only the mapping. Texts and metadata are read on demand. Thread-safe.
+ */
+public final class EmbeddingExportReader implements AutoCloseable {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    // Mappings are limited to 2 GB; each chunk holds a whole number of rows
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+    private final Path base;
+    private final int dimension;
+    private final long count;
+    private final int rowBytes;
+    private final long rowsPerChunk;
+    private final MappedByteBuffer[] vectorChunks;
+    private final MappedByteBuffer[] indexChunks;
+    private final long indexEntriesPerChunk;
+    private final FileChannel texts;
+    private final FileChannel metadata;
+
+    private EmbeddingExportReader(Path base) throws IOException {
+        this.base = base;
+        try (FileChannel vectors = FileChannel.open(EmbeddingExportWriter.file(base, ".vec"), StandardOpenOption.READ);
+             FileChannel index = FileChannel.open(EmbeddingExportWriter.file(base, ".idx"), StandardOpenOption.READ)) {
+            ByteBuffer vectorHeader = readHeader(vectors, EmbeddingExportWriter.VECTOR_MAGIC, ".vec");
+            ByteBuffer indexHeader = readHeader(index, EmbeddingExportWriter.INDEX_MAGIC, ".idx");
+            this.dimension = vectorHeader.getInt(8);
+            this.count = vectorHeader.getLong((int) EmbeddingExportWriter.COUNT_OFFSET);
+            if (dimension <= 0 || indexHeader.getInt(8) != dimension
+                    || indexHeader.getLong((int) EmbeddingExportWriter.COUNT_OFFSET) != count) {
+                throw new IOException("The columns of export " + base + " don't belong together");
+            }
+            this.rowBytes = dimension * Float.BYTES;
+            long header = EmbeddingExportWriter.HEADER_BYTES;
+            if (vectors.size() != header + count * rowBytes
+                    || index.size() != header + (count + 1) * EmbeddingExportWriter.INDEX_ENTRY_BYTES) {
+                throw new IOException("Export " + base + " is truncated");
+            }
+            this.rowsPerChunk = Math.max(1, MAX_CHUNK_BYTES / rowBytes);
+            this.vectorChunks = map(vectors, header, count, rowBytes, rowsPerChunk);
+            this.indexEntriesPerChunk = MAX_CHUNK_BYTES / EmbeddingExportWriter.INDEX_ENTRY_BYTES;
+            this.indexChunks = map(index, header, count + 1, EmbeddingExportWriter.INDEX_ENTRY_BYTES, indexEntriesPerChunk);
+        }
+        this.texts = FileChannel.open(EmbeddingExportWriter.file(base, ".txt"), StandardOpenOption.READ);
+        this.metadata = FileChannel.open(EmbeddingExportWriter.file(base, ".meta"), StandardOpenOption.READ);
+        if (texts.size() != textOffset(count) || metadata.size() != metadataOffset(count)) {
+            close();
+            throw new IOException("The text or metadata column of export " + base + " doesn't match its index");
+        }
+    }
+
+    public static EmbeddingExportReader open(Path base) throws IOException {
+        return new EmbeddingExportReader(base);
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public long size() {
+        return count;
+    }
+
+    // Read-only view of the row's vector in the mapped file
+    public FloatBuffer vector(long row) {
+        checkRow(row);
+        ByteBuffer chunk = vectorChunks[(int) (row / rowsPerChunk)];
+        int position = (int) (row % rowsPerChunk) * rowBytes;
+        return chunk.slice(position, rowBytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+
+    // The row's vector copied into the array
+    public float[] vector(long row, float[] into) {
+        vector(row).get(into, 0, dimension);
+        return into;
+    }
+
+    public String text(long row) {
+        checkRow(row);
+        return new String(read(texts, textOffset(row), textOffset(row + 1)), StandardCharsets.UTF_8);
+    }
+
+    public Map<String, Object> metadata(long row) {
+        checkRow(row);
+        try {
+            return objectMapper.readValue(read(metadata, metadataOffset(row), metadataOffset(row + 1)), METADATA_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not parse the metadata of row " + row + " of " + base, e);
+        }
+    }
+
+    // The mappings are released when the buffers are garbage collected
+    @Override
+    public void close() throws IOException {
+        try {
+            texts.close();
+        } finally {
+            metadata.close();
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel, int magic, String column) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(EmbeddingExportWriter.HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header, 0);
+        if (header.getInt(0) != magic || header.getInt(4) != EmbeddingExportWriter.VERSION) {
+            throw new IOException("Not a version " + EmbeddingExportWriter.VERSION + " embedding export " + column + " file");
+        }
+        return header;
+    }
+
+    private static MappedByteBuffer[] map(FileChannel channel, long header, long entries, int entryBytes,
+                                          long entriesPerChunk) throws IOException {
+        MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((entries + entriesPerChunk - 1) / entriesPerChunk)];
+        for (int i = 0; i < chunks.length; i++) {
+            long first = i * entriesPerChunk;
+            long length = Math.min(entriesPerChunk, entries - first) * entryBytes;
+            chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, header + first * entryBytes, length);
+            chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return chunks;
+    }
+
+    private long textOffset(long entry) {
+        return indexLong(entry, 0);
+    }
+
+    private long metadataOffset(long entry) {
+        return indexLong(entry, Long.BYTES);
+    }
+
+    private long indexLong(long entry, int field) {
+        ByteBuffer chunk = indexChunks[(int) (entry / indexEntriesPerChunk)];
+        return chunk.getLong((int) (entry % indexEntriesPerChunk) * EmbeddingExportWriter.INDEX_ENTRY_BYTES + field);
+    }
+
+    private byte[] read(FileChannel channel, long start, long end) {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - start));
+        try {
+            readFully(channel, buffer, start);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + base, e);
+        }
+        return buffer.array();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private void checkRow(long row) {
+        if (row < 0 || row >= count) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + count);
+        }
+    }
+}
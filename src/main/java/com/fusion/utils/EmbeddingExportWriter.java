@@ -0,0 +1,212 @@
+package com.fusion.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Writes embeddings in the columnar export format read by {@link EmbeddingExportReader}. An export named
+ * {@code base} is four files:
+ * <ul>
+ *   <li>{@code base.vec}: a header, then every vector as dimension little-endian float32 values, in row order</li>
+ *   <li>{@code base.txt}: the UTF-8 segment texts, back to back</li>
+ *   <li>{@code base.meta}: each row's metadata as a UTF-8 JSON object, back to back</li>
+ *   <li>{@code base.idx}: a header, then count + 1 pairs of little-endian longs giving the offsets of each row's
+ *   text and metadata; row i spans from entry i to entry i + 1</li>
+ * </ul>
+ * The files are written under temporary names and moved into place by {@link #close()}, so a reader never
+ * sees a half-written column. Not thread-safe.
+ */
+public final class EmbeddingExportWriter implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingExportWriter.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    static final int VECTOR_MAGIC = 0x31434556;
+    static final int INDEX_MAGIC = 0x31584449;
+    static final int VERSION = 1;
+    // magic, version, dimension, unused, row count; a multiple of 4 keeps the vectors float-aligned
+    static final int HEADER_BYTES = 32;
+    static final long COUNT_OFFSET = 16;
+    static final int INDEX_ENTRY_BYTES = 2 * Long.BYTES;
+
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final String PARTIAL_SUFFIX = ".partial";
+
+    private final Path base;
+    private final int dimension;
+    private final Column vectors;
+    private final Column texts;
+    private final Column metadata;
+    private final Column index;
+    private long count;
+    private boolean closed;
+
+    public EmbeddingExportWriter(Path base, int dimension) throws IOException {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("dimension must be positive: " + dimension);
+        }
+        this.base = base;
+        this.dimension = dimension;
+        Path parent = base.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.vectors = new Column(file(base, ".vec"));
+        this.texts = new Column(file(base, ".txt"));
+        this.metadata = new Column(file(base, ".meta"));
+        this.index = new Column(file(base, ".idx"));
+
+        writeHeader(vectors, VECTOR_MAGIC);
+        writeHeader(index, INDEX_MAGIC);
+        writeIndexEntry();
+    }
+
+    // The file of one column of the export with the given base path
+    public static Path file(Path base, String extension) {
+        return base.resolveSibling(base.getFileName() + extension);
+    }
+
+    public void append(Embedding embedding, TextSegment segment) throws IOException {
+        append(embedding.vector(), segment.text(), segment.metadata().toMap());
+    }
+
+    public void append(float[] vector, String text, Map<String, ?> rowMetadata) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("Expected a " + dimension + "-dimension vector, got " + vector.length);
+        }
+        for (float value : vector) {
+            vectors.ensureRemaining(Float.BYTES).putFloat(value);
+        }
+        texts.put(text.getBytes(StandardCharsets.UTF_8));
+        metadata.put(objectMapper.writeValueAsBytes(rowMetadata));
+        writeIndexEntry();
+        count++;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // Writes the row count, flushes the columns and moves them into place
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (Column column : new Column[]{vectors, texts, metadata, index}) {
+                column.flush();
+            }
+            ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, count);
+            vectors.channel.write(countBuffer, COUNT_OFFSET);
+            index.channel.write(countBuffer.rewind(), COUNT_OFFSET);
+            for (Column column : new Column[]{vectors, texts, metadata, index}) {
+                column.channel.force(true);
+            }
+        } finally {
+            for (Column column : new Column[]{vectors, texts, metadata, index}) {
+                column.channel.close();
+            }
+        }
+        // The index goes last; readers check that its row count and sizes match the other columns
+        vectors.publish();
+        texts.publish();
+        metadata.publish();
+        index.publish();
+        logger.info("Exported {} {}-dimension embeddings to {}.*", count, dimension, base);
+    }
+
+    // Leaves no files behind
+    public void abort() {
+        closed = true;
+        for (Column column : new Column[]{vectors, texts, metadata, index}) {
+            try {
+                column.channel.close();
+                Files.deleteIfExists(column.partial);
+            } catch (IOException e) {
+                logger.warn("Could not remove {}: {}", column.partial, e.getMessage());
+            }
+        }
+    }
+
+    private void writeHeader(Column column, int magic) throws IOException {
+        column.ensureRemaining(HEADER_BYTES)
+                .putInt(magic)
+                .putInt(VERSION)
+                .putInt(dimension)
+                .putInt(0)
+                .putLong(0)
+                .putLong(0);
+    }
+
+    private void writeIndexEntry() throws IOException {
+        index.ensureRemaining(INDEX_ENTRY_BYTES)
+                .putLong(texts.size())
+                .putLong(metadata.size());
+    }
+
+    // One output file, written through a little-endian buffer
+    private static final class Column {
+
+        final Path target;
+        final Path partial;
+        final FileChannel channel;
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        long flushed;
+
+        Column(Path target) throws IOException {
+            this.target = target;
+            this.partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+            this.channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        long size() {
+            return flushed + buffer.position();
+        }
+
+        ByteBuffer ensureRemaining(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+
+        void put(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int length = Math.min(bytes.length - offset, ensureRemaining(1).remaining());
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                flushed += channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        void publish() throws IOException {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
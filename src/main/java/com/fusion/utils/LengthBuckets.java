@@ -0,0 +1,65 @@
+package com.fusion.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Groups texts of similar token length into the same batch. A batch is padded to its longest text, so
+ * mixing one long segment into a batch of short ones makes every row as expensive as the long one.
+ * Positions are sorted by length and cut into consecutive batches; callers put results back by position.
+ */
+public final class LengthBuckets {
+
+    private LengthBuckets() {
+    }
+
+    // Positions 0..lengths.length-1, shortest first, in batches of at most batchSize
+    public static List<int[]> group(int[] lengths, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        int[] order = IntStream.range(0, lengths.length).boxed()
+                .sorted(Comparator.comparingInt(position -> lengths[position]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        List<int[]> batches = new ArrayList<>((order.length + batchSize - 1) / batchSize);
+        for (int from = 0; from < order.length; from += batchSize) {
+            batches.add(Arrays.copyOfRange(order, from, Math.min(order.length, from + batchSize)));
+        }
+        return batches;
+    }
+
+    // Positions 0..size-1 in their original order, in batches of at most batchSize
+    public static List<int[]> inOrder(int size, int batchSize) {
+        List<int[]> batches = new ArrayList<>();
+        for (int from = 0; from < size; from += batchSize) {
+            batches.add(IntStream.range(from, Math.min(size, from + batchSize)).toArray());
+        }
+        return batches;
+    }
+
+    // Tokens the batch occupies once every row is padded to its longest one
+    public static long paddedTokens(int[] lengths, int[] batch) {
+        int longest = 0;
+        for (int position : batch) {
+            longest = Math.max(longest, lengths[position]);
+        }
+        return (long) longest * batch.length;
+    }
+
+    public static long tokens(int[] lengths, int[] batch) {
+        long tokens = 0;
+        for (int position : batch) {
+            tokens += lengths[position];
+        }
+        return tokens;
+    }
+
+    // Share of the padded tensor that is padding, 0 when nothing was counted
+    public static double paddingRatio(long tokens, long paddedTokens) {
+        return paddedTokens == 0 ? 0.0 : (paddedTokens - tokens) / (double) paddedTokens;
+    }
+}
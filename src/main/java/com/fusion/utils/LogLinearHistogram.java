@@ -0,0 +1,109 @@
+package com.fusion.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative long values with log-linear buckets, in the spirit of HdrHistogram.
+ * Each power of two is split into 32 sub-buckets, so recorded values are reported within about 3%.
+ */
+public class LogLinearHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketIndex(v));
+        count.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long maxValue = max.get();
+        double mean = total == 0 ? 0.0 : (double) sum.sum() / total;
+        return new Snapshot(total, mean, maxValue,
+                percentile(copy, total, maxValue, 0.50),
+                percentile(copy, total, maxValue, 0.90),
+                percentile(copy, total, maxValue, 0.99),
+                percentile(copy, total, maxValue, 0.999));
+    }
+
+    // Values at the given quantiles (0..1) over the current counts, e.g. for a percentile distribution
+    public long[] percentiles(double... quantiles) {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        long maxValue = max.get();
+        long[] values = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            values[i] = percentile(copy, total, maxValue, quantiles[i]);
+        }
+        return values;
+    }
+
+    // Upper bound of the bucket holding the requested rank, capped at the largest value recorded
+    private static long percentile(long[] counts, long total, long maxValue, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int mantissa = (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+        return (shift + 1) * SUB_BUCKETS + mantissa;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS;
+        long lower = (SUB_BUCKETS + mantissa) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public record Snapshot(long count, double mean, long max, long p50, long p90, long p99, long p999) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.fusion.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Resolves model and tokenizer locations to files, since ONNX Runtime and the tokenizer only load from
+ * the file system. A location is either {@code classpath:<resource>} or a file path. Resources packed
+ * in a jar are extracted to a temporary file that is deleted on exit.
+ */
+public final class ModelFiles {
+
+    public static final String CLASSPATH_PREFIX = "classpath:";
+
+    private ModelFiles() {
+    }
+
+    public static Path resolve(String location) throws IOException {
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("No model file location given");
+        }
+        if (!location.startsWith(CLASSPATH_PREFIX)) {
+            Path path = Paths.get(location);
+            if (!Files.isRegularFile(path)) {
+                throw new NoSuchFileException(location);
+            }
+            return path;
+        }
+
+        String resource = location.substring(CLASSPATH_PREFIX.length()).replaceFirst("^/+", "");
+        URL url = ModelFiles.class.getClassLoader().getResource(resource);
+        if (url == null) {
+            throw new NoSuchFileException(location);
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return Paths.get(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid resource URL " + url, e);
+            }
+        }
+        String name = Paths.get(resource).getFileName().toString();
+        Path extracted = Files.createTempFile("model-", "-" + name);
+        extracted.toFile().deleteOnExit();
+        try (InputStream in = url.openStream()) {
+            Files.copy(in, extracted, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return extracted;
+    }
+}
@@ -0,0 +1,117 @@
+package com.fusion.utils;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Embeds segments in batches on a pool of threads and hands the results to a consumer in segment order.
+ * At most two batches per thread are in flight, so results waiting behind a slow batch stay bounded.
+ *
+ * <p>When the model pads its batches (see {@link TokenCounter}), segments are taken in windows of one batch
+ * per thread, tokenized, and regrouped into batches of similar token length; each window is delivered in
+ * segment order once all of its batches are done.
+ */
+public final class OrderedParallelEmbedder {
+
+    @FunctionalInterface
+    public interface BatchConsumer {
+        void accept(List<TextSegment> segments, List<Embedding> embeddings) throws Exception;
+    }
+
+    private final EmbeddingModel embeddingModel;
+    private final int threads;
+    private final int batchSize;
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder paddedTokens = new LongAdder();
+
+    public OrderedParallelEmbedder(EmbeddingModel embeddingModel, int threads, int batchSize) {
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("threads and batchSize must be positive");
+        }
+        this.embeddingModel = embeddingModel;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    public void embed(List<TextSegment> segments, BatchConsumer consumer) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ordered-embedder");
+            thread.setDaemon(true);
+            return thread;
+        });
+        TokenCounter counter = TokenCounter.of(embeddingModel);
+        int windowSize = counter == null ? batchSize : batchSize * threads;
+        int maxWindows = counter == null ? threads * 2 : 2;
+        Deque<Window> inFlight = new ArrayDeque<>();
+        try {
+            for (int start = 0; start < segments.size(); start += windowSize) {
+                if (inFlight.size() >= maxWindows) {
+                    inFlight.removeFirst().deliver(consumer);
+                }
+                List<TextSegment> window = segments.subList(start, Math.min(start + windowSize, segments.size()));
+                List<int[]> buckets;
+                if (counter == null) {
+                    buckets = LengthBuckets.inOrder(window.size(), batchSize);
+                } else {
+                    int[] lengths = counter.count(window.stream().map(TextSegment::text).toList());
+                    buckets = LengthBuckets.group(lengths, batchSize);
+                    for (int[] bucket : buckets) {
+                        tokens.add(LengthBuckets.tokens(lengths, bucket));
+                        paddedTokens.add(LengthBuckets.paddedTokens(lengths, bucket));
+                    }
+                }
+                List<Future<List<Embedding>>> embeddings = new ArrayList<>(buckets.size());
+                for (int[] bucket : buckets) {
+                    List<TextSegment> batch = new ArrayList<>(bucket.length);
+                    for (int position : bucket) {
+                        batch.add(window.get(position));
+                    }
+                    embeddings.add(executor.submit(() -> embeddingModel.embedAll(batch).content()));
+                }
+                inFlight.addLast(new Window(window, buckets, embeddings));
+            }
+            while (!inFlight.isEmpty()) {
+                inFlight.removeFirst().deliver(consumer);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Share of the padded batches run so far that was padding; 0 if the model doesn't report token counts
+    public double getPaddingRatio() {
+        return LengthBuckets.paddingRatio(tokens.sum(), paddedTokens.sum());
+    }
+
+    private record Window(List<TextSegment> segments, List<int[]> buckets, List<Future<List<Embedding>>> embeddings) {
+
+        void deliver(BatchConsumer consumer) throws Exception {
+            Embedding[] ordered = new Embedding[segments.size()];
+            for (int i = 0; i < buckets.size(); i++) {
+                List<Embedding> result;
+                try {
+                    result = embeddings.get(i).get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+                int[] bucket = buckets.get(i);
+                for (int j = 0; j < bucket.length; j++) {
+                    ordered[bucket[j]] = result.get(j);
+                }
+            }
+            consumer.accept(segments, Arrays.asList(ordered));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.fusion.utils;
 
+import com.fusion.store.CachingEmbeddingModel;
+import com.fusion.store.PooledOnnxEmbeddingModel;
 import com.opencsv.CSVWriter;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
@@ -9,11 +11,8 @@ import dev.langchain4j.data.document.splitter.DocumentSplitters;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
-import dev.langchain4j.model.output.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
 import java.io.FileWriter;
 import java.io.IOException;
@@ -22,78 +21,130 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
-@Service
-public class PDFEmbeddingProcessor {
+// Exports the embeddings of a PDF from the command line (see main). Not a bean: the application embeds
+// through the model registry, and this processor's session pool would load another copy of the model per core.
+public class PDFEmbeddingProcessor implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(PDFEmbeddingProcessor.class);
 
-    private final EmbeddingModel embeddingModel;
+    private static final int DIMENSION = 384;
+    private static final int BATCH_SIZE = 32;
 
-    public PDFEmbeddingProcessor() {
-        this.embeddingModel = new AllMiniLmL6V2EmbeddingModel();
+    private final PooledOnnxEmbeddingModel model;
+    private final EmbeddingModel embeddingModel;
+    private final OrderedParallelEmbedder embedder;
+
+    public PDFEmbeddingProcessor() throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        // One single-threaded ONNX session per embedding thread; batches are grouped by token length
+        this.model = PooledOnnxEmbeddingModel.allMiniLmL6V2(new PooledOnnxEmbeddingModel.Options(
+                threads, 1, 1, PooledOnnxEmbeddingModel.optimizationLevel("all"), true, 256, BATCH_SIZE));
+        // Segments embedded before, by this or any other processor of the same model, come from the disk cache
+        this.embeddingModel = CachingEmbeddingModel.withDefaultCache(model, "all-minilm-l6-v2", DIMENSION);
+        this.embedder = new OrderedParallelEmbedder(embeddingModel, threads, BATCH_SIZE);
     }
 
     public void processPdfAndWriteToCsv(String pdfPath, String csvOutputPath) throws Exception {
-        Path path = Paths.get(pdfPath);
-        Document document = FileSystemDocumentLoader.loadDocument(path, new ApachePdfBoxDocumentParser());
-
-        DocumentSplitter documentSplitter = DocumentSplitters.recursive(300, 0);
-        List<TextSegment> segments = documentSplitter.split(document);
+        List<TextSegment> segments = loadSegments(pdfPath);
         // Write metadata, text, and embeddings to a CSV file
         try (CSVWriter writer = new CSVWriter(new FileWriter(csvOutputPath))) {
             // Write the CSV header
             String[] header = {"Text Segment", "Embedding", "Document Metadata"};
             writer.writeNext(header);
 
-            // Process each chunk (text segment)
-            for (TextSegment segment : segments) {
-                // Convert text segment into embeddings
-                Response<Embedding> response = embeddingModel.embed(segment.text());
+            // Segments are embedded in parallel batches and written in document order
+            embedder.embed(segments, (batch, embeddings) -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    writer.writeNext(csvRow(batch.get(i), embeddings.get(i)));
+                }
+            });
+        } catch (IOException e) {
+            logger.error("Error writing to CSV", e);
+            throw new Exception("Error writing to CSV file", e);
+        }
 
-                segment.metadata().put("custom data" , "this is customdata");
-                // Collect the necessary metadata
-                String documentMetadata = segment.metadata().toString();
+        logger.info("Processed PDF and wrote embeddings to CSV: {} ({} padding)", csvOutputPath, paddingPercent());
+    }
 
+    // The text, embedding, and metadata of one segment as a CSV row
+    public static String[] csvRow(TextSegment segment, Embedding embedding) {
+        return new String[]{
+                segment.text(),
+                embedding.vectorAsList().toString(),
+                segment.metadata().toString()
+        };
+    }
 
-                // Convert embedding to a string (space-separated values)
-                String embeddingString = response.content().vectorAsList().toString();
+    // Writes the columnar binary export (<outputBase>.vec/.txt/.meta/.idx), see EmbeddingExportWriter
+    public void processPdfAndWriteBinary(String pdfPath, String outputBase) throws Exception {
+        List<TextSegment> segments = loadSegments(pdfPath);
+        long start = System.nanoTime();
+        EmbeddingExportWriter writer = new EmbeddingExportWriter(Paths.get(outputBase), DIMENSION);
+        try {
+            embedder.embed(segments, (batch, embeddings) -> {
+                for (int i = 0; i < batch.size(); i++) {
+                    writer.append(embeddings.get(i), batch.get(i));
+                }
+            });
+            writer.close();
+        } catch (Exception e) {
+            writer.abort();
+            throw e;
+        }
 
-                // Write the text, embedding, and metadata to CSV
-                String[] row = {
-                        segment.text(),
-                        embeddingString,
-                        documentMetadata
+        logger.info("Processed PDF and wrote {} embeddings to {}.* in {} ms ({} padding)",
+                writer.getCount(), outputBase, (System.nanoTime() - start) / 1_000_000, paddingPercent());
+    }
 
-                };
-                writer.writeNext(row);
-            }
-        } catch (IOException e) {
-            logger.error("Error writing to CSV", e);
-            throw new Exception("Error writing to CSV file", e);
-        }
+    // Releases the ONNX sessions
+    @Override
+    public void close() {
+        model.close();
+    }
+
+    // Share of the padded inference batches that was padding
+    private String paddingPercent() {
+        return String.format("%.1f%%", embedder.getPaddingRatio() * 100);
+    }
 
-        logger.info("Processed PDF and wrote embeddings to CSV: {}", csvOutputPath);
+    private List<TextSegment> loadSegments(String pdfPath) {
+        Path path = Paths.get(pdfPath);
+        Document document = FileSystemDocumentLoader.loadDocument(path, new ApachePdfBoxDocumentParser());
+
+        DocumentSplitter documentSplitter = DocumentSplitters.recursive(300, 0);
+        List<TextSegment> segments = documentSplitter.split(document);
+        for (TextSegment segment : segments) {
+            segment.metadata().put("custom data" , "this is customdata");
+        }
+        return segments;
     }
 
 
+    // Arguments: [binary|csv], binary by default
     public static void main(String[] args) {
         try {
             // Load the PDF from resources/examples directory
             ClassLoader classLoader = PDFEmbeddingProcessor.class.getClassLoader();
             Path pdfPath = Paths.get(classLoader.getResource("example-files/2025_US_F150_Warranty_Guide_ENG_V1.pdf").toURI());  // Adjust the file name accordingly
-            String csvOutputPath = "src/main/resources/output/embeddings.csv";
-            // Update this to where you want to save the CSV
+            boolean csv = args.length > 0 && args[0].equalsIgnoreCase("csv");
 
             // Create an instance of the processor
-            PDFEmbeddingProcessor processor = new PDFEmbeddingProcessor();
-
-            // Process the PDF and write to CSV
-            processor.processPdfAndWriteToCsv(pdfPath.toString(), csvOutputPath);
-            logger.info("PDF processing and embedding generation completed successfully. CSV saved to: {}", csvOutputPath);
+            try (PDFEmbeddingProcessor processor = new PDFEmbeddingProcessor()) {
+                if (csv) {
+                    String csvOutputPath = "src/main/resources/output/embeddings.csv";
+                    // Update this to where you want to save the CSV
+                    processor.processPdfAndWriteToCsv(pdfPath.toString(), csvOutputPath);
+                    logger.info("PDF processing and embedding generation completed successfully. CSV saved to: {}", csvOutputPath);
+                } else {
+                    String outputBase = "src/main/resources/output/embeddings";
+                    processor.processPdfAndWriteBinary(pdfPath.toString(), outputBase);
+                    logger.info("PDF processing and embedding generation completed successfully. Export saved to: {}.*", outputBase);
+                }
+            }
         } catch (URISyntaxException e) {
             logger.error("Error locating the PDF file in resources: {}", e.getMessage(), e);
         } catch (Exception e) {
             logger.error("Error processing the PDF: {}", e.getMessage(), e);
         }
     }
-}
\ No newline at end of file
+}
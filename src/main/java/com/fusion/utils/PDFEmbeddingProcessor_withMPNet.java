@@ -1,5 +1,6 @@
 package com.fusion.utils;
 
+import com.fusion.store.CachingEmbeddingModel;
 import com.opencsv.CSVWriter;
 import dev.langchain4j.data.document.Document;
 import dev.langchain4j.data.document.DocumentSplitter;
@@ -15,7 +16,6 @@ import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2Embedding
 import dev.langchain4j.model.output.Response;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.stereotype.Service;
 
 import java.io.FileWriter;
 import java.io.IOException;
@@ -24,20 +24,22 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
-@Service
+// Exports the MPNet embeddings of a PDF from the command line (see main); not a bean, so the application
+// doesn't load the model unless it is configured in the registry
 public class PDFEmbeddingProcessor_withMPNet {
 
     private static final Logger logger = LoggerFactory.getLogger(PDFEmbeddingProcessor_withMPNet.class);
 
     private final EmbeddingModel embeddingModel;
 
-    public PDFEmbeddingProcessor_withMPNet() {
+    public PDFEmbeddingProcessor_withMPNet() throws IOException {
 
-        this.embeddingModel = new OnnxEmbeddingModel(
-                "/Users/satyaanumolu/POCs/RAGExamples/src/main/resources/onnx/all-mpnet-base-v2.onnx",
-                "/Users/satyaanumolu/POCs/RAGExamples/src/main/resources/onnx/all-mpnet-base-v2-tokenizer.json",
+        // Segments embedded before come from the disk cache
+        this.embeddingModel = CachingEmbeddingModel.withDefaultCache(new OnnxEmbeddingModel(
+                ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2.onnx").toString(),
+                ModelFiles.resolve("classpath:onnx/all-mpnet-base-v2-tokenizer.json").toString(),
                 PoolingMode.MEAN
-        );
+        ), "all-mpnet-base-v2", 768);
     }
 
     public void processPdfAndWriteToCsv(String pdfPath, String csvOutputPath) throws Exception {
@@ -0,0 +1,264 @@
+package com.fusion.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Linear projection of embeddings onto their top principal components.
+ * Components are ordered by explained variance, so a prefix of a projected vector is itself a valid
+ * lower-dimensional projection. Projected vectors are L2-normalized for cosine similarity.
+ */
+public class PcaProjection {
+
+    private static final int MAGIC = 0x50434131; // "PCA1"
+    private static final int MAX_ITERATIONS = 200;
+    private static final double TOLERANCE = 1e-7;
+    // Below this fraction of its length, what is left of a vector after Gram-Schmidt is rounding noise
+    private static final double RANK_TOLERANCE = 1e-9;
+
+    private final int inputDimension;
+    private final float[] mean;
+    private final float[][] components;
+
+    public PcaProjection(float[] mean, float[][] components) {
+        this.inputDimension = mean.length;
+        this.mean = mean;
+        this.components = components;
+    }
+
+    public int getInputDimension() {
+        return inputDimension;
+    }
+
+    public int getOutputDimension() {
+        return components.length;
+    }
+
+    // Projects onto the first length components (at most getOutputDimension()) and normalizes
+    public float[] project(float[] vector, int length) {
+        if (vector.length != inputDimension) {
+            throw new IllegalArgumentException("Expected a vector of dimension " + inputDimension + " but got " + vector.length);
+        }
+        int outputLength = Math.min(length, components.length);
+        float[] projected = new float[outputLength];
+        for (int c = 0; c < outputLength; c++) {
+            float[] component = components[c];
+            double sum = 0.0;
+            for (int i = 0; i < inputDimension; i++) {
+                sum += (vector[i] - mean[i]) * component[i];
+            }
+            projected[c] = (float) sum;
+        }
+        return normalize(projected);
+    }
+
+    public float[] project(float[] vector) {
+        return project(vector, components.length);
+    }
+
+    // Fits the top outputDimension principal components of the samples by orthogonal (subspace) iteration
+    public static PcaProjection fit(List<float[]> samples, int outputDimension) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("Cannot fit a projection without samples");
+        }
+        int dimension = samples.get(0).length;
+        if (outputDimension <= 0 || outputDimension > dimension) {
+            throw new IllegalArgumentException("Output dimension must be between 1 and " + dimension + ": " + outputDimension);
+        }
+        // n centered samples span at most n - 1 dimensions
+        if (samples.size() <= outputDimension) {
+            throw new IllegalArgumentException("Fitting " + outputDimension + " components needs more than "
+                    + outputDimension + " samples, got " + samples.size());
+        }
+
+        double[] mean = new double[dimension];
+        for (float[] sample : samples) {
+            for (int i = 0; i < dimension; i++) {
+                mean[i] += sample[i];
+            }
+        }
+        for (int i = 0; i < dimension; i++) {
+            mean[i] /= samples.size();
+        }
+
+        // Covariance matrix, accumulated over the upper triangle and mirrored
+        double[][] covariance = new double[dimension][dimension];
+        double[] centered = new double[dimension];
+        for (float[] sample : samples) {
+            for (int i = 0; i < dimension; i++) {
+                centered[i] = sample[i] - mean[i];
+            }
+            for (int i = 0; i < dimension; i++) {
+                double ci = centered[i];
+                double[] row = covariance[i];
+                for (int j = i; j < dimension; j++) {
+                    row[j] += ci * centered[j];
+                }
+            }
+        }
+        for (int i = 0; i < dimension; i++) {
+            for (int j = i; j < dimension; j++) {
+                covariance[i][j] /= samples.size();
+                covariance[j][i] = covariance[i][j];
+            }
+        }
+
+        double[][] basis = new double[outputDimension][dimension];
+        Random random = new Random(42);
+        for (double[] vector : basis) {
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = random.nextGaussian();
+            }
+        }
+        orthonormalize(basis);
+
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double[][] next = new double[outputDimension][];
+            for (int c = 0; c < outputDimension; c++) {
+                next[c] = multiply(covariance, basis[c]);
+            }
+            orthonormalize(next);
+            double change = 0.0;
+            for (int c = 0; c < outputDimension; c++) {
+                change = Math.max(change, 1.0 - Math.abs(dot(next[c], basis[c])));
+            }
+            basis = next;
+            if (change < TOLERANCE) {
+                break;
+            }
+        }
+
+        // Order the components by their Rayleigh quotient, i.e. explained variance
+        double[] variance = new double[outputDimension];
+        Integer[] order = new Integer[outputDimension];
+        for (int c = 0; c < outputDimension; c++) {
+            variance[c] = dot(basis[c], multiply(covariance, basis[c]));
+            order[c] = c;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(variance[b], variance[a]));
+
+        float[][] components = new float[outputDimension][dimension];
+        for (int c = 0; c < outputDimension; c++) {
+            double[] source = basis[order[c]];
+            for (int i = 0; i < dimension; i++) {
+                components[c][i] = (float) source[i];
+            }
+        }
+        float[] floatMean = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            floatMean[i] = (float) mean[i];
+        }
+        return new PcaProjection(floatMean, components);
+    }
+
+    // Writes to a temporary file first so a crash never leaves a truncated projection behind
+    public void save(Path path) throws IOException {
+        if (path.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+        }
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(inputDimension);
+            out.writeInt(components.length);
+            for (float value : mean) {
+                out.writeFloat(value);
+            }
+            for (float[] component : components) {
+                for (float value : component) {
+                    out.writeFloat(value);
+                }
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static PcaProjection load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a PCA projection file: " + path);
+            }
+            int inputDimension = in.readInt();
+            int outputDimension = in.readInt();
+            float[] mean = new float[inputDimension];
+            for (int i = 0; i < inputDimension; i++) {
+                mean[i] = in.readFloat();
+            }
+            float[][] components = new float[outputDimension][inputDimension];
+            for (int c = 0; c < outputDimension; c++) {
+                for (int i = 0; i < inputDimension; i++) {
+                    components[c][i] = in.readFloat();
+                }
+            }
+            return new PcaProjection(mean, components);
+        }
+    }
+
+    // Truncates to length components and rescales to unit length
+    public static float[] truncateAndNormalize(float[] vector, int length) {
+        return normalize(Arrays.copyOf(vector, Math.min(length, vector.length)));
+    }
+
+    static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0.0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] = (float) (vector[i] / norm);
+            }
+        }
+        return vector;
+    }
+
+    private static double[] multiply(double[][] matrix, double[] vector) {
+        double[] result = new double[vector.length];
+        for (int i = 0; i < matrix.length; i++) {
+            result[i] = dot(matrix[i], vector);
+        }
+        return result;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    // Modified Gram-Schmidt, in place. Fails when a vector lies in the span of the previous ones, i.e. when the
+    // samples, e.g. duplicates, span fewer dimensions than components are requested.
+    private static void orthonormalize(double[][] vectors) {
+        for (int c = 0; c < vectors.length; c++) {
+            double[] vector = vectors[c];
+            double length = Math.sqrt(dot(vector, vector));
+            for (int p = 0; p < c; p++) {
+                double projection = dot(vector, vectors[p]);
+                double[] previous = vectors[p];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] -= projection * previous[i];
+                }
+            }
+            double norm = Math.sqrt(dot(vector, vector));
+            if (!(norm > RANK_TOLERANCE * length)) {
+                throw new IllegalArgumentException("The samples span only " + c + " dimensions, fewer than the "
+                        + vectors.length + " components requested");
+            }
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= norm;
+            }
+        }
+    }
+}
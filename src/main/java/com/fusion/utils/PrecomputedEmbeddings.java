@@ -0,0 +1,261 @@
+package com.fusion.utils;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.segment.TextSegment;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Streams precomputed (vector, text, metadata) rows, one at a time, from the output of PDFEmbeddingProcessor:
+ * <ul>
+ *   <li>a CSV of text, the vector as {@code [x, y, ...]}, and the metadata as {@code Metadata.toString()} or JSON</li>
+ *   <li>a binary export, named by its base path or any of its files (see {@link EmbeddingExportWriter})</li>
+ * </ul>
+ * Every row must have {@link #dimension()} values.
+ */
+public interface PrecomputedEmbeddings extends Iterator<PrecomputedEmbeddings.Row>, AutoCloseable {
+
+    record Row(float[] vector, String text, Map<String, Object> metadata) {
+
+        public TextSegment segment() {
+            return TextSegment.from(text, toMetadata(metadata));
+        }
+    }
+
+    // Values per vector; 0 for an empty file
+    int dimension();
+
+    // Rows in the file, or an estimate where that isn't known up front
+    long estimatedRows();
+
+    @Override
+    void close() throws IOException;
+
+    static PrecomputedEmbeddings open(Path path) throws IOException {
+        String name = path.getFileName().toString();
+        if (name.endsWith(".csv")) {
+            return new Csv(path);
+        }
+        for (String extension : new String[]{".vec", ".txt", ".meta", ".idx"}) {
+            if (name.endsWith(extension)) {
+                path = path.resolveSibling(name.substring(0, name.length() - extension.length()));
+                break;
+            }
+        }
+        return new Export(EmbeddingExportReader.open(path));
+    }
+
+    // Metadata only holds strings, UUIDs and numbers; anything else is kept as its string form
+    private static Metadata toMetadata(Map<String, Object> values) {
+        Map<String, Object> supported = new LinkedHashMap<>();
+        values.forEach((key, value) -> supported.put(key, value instanceof String || value instanceof UUID
+                || value instanceof Integer || value instanceof Long || value instanceof Float || value instanceof Double
+                ? value : String.valueOf(value)));
+        return Metadata.from(supported);
+    }
+
+    final class Export implements PrecomputedEmbeddings {
+
+        private final EmbeddingExportReader reader;
+        private long row;
+
+        private Export(EmbeddingExportReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int dimension() {
+            return reader.dimension();
+        }
+
+        @Override
+        public long estimatedRows() {
+            return reader.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return row < reader.size();
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Row next = new Row(reader.vector(row, new float[reader.dimension()]), reader.text(row), reader.metadata(row));
+            row++;
+            return next;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    final class Csv implements PrecomputedEmbeddings {
+
+        private static final ObjectMapper objectMapper = new ObjectMapper();
+        private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+        };
+        private static final String METADATA_PREFIX = "Metadata { metadata = {";
+        private static final String METADATA_SUFFIX = "} }";
+        // Rough size of a CSV row: about 12 characters per value plus the text and metadata
+        private static final int ESTIMATED_BYTES_PER_VALUE = 12;
+        private static final int ESTIMATED_BYTES_PER_ROW = 512;
+
+        private final Path path;
+        private final CSVReader reader;
+        private final long fileBytes;
+        private final int dimension;
+        private long line;
+        private Row next;
+
+        private Csv(Path path) throws IOException {
+            this.path = path;
+            this.fileBytes = Files.size(path);
+            this.reader = new CSVReader(Files.newBufferedReader(path, StandardCharsets.UTF_8));
+            try {
+                String[] first = readRecord();
+                // The header written by PDFEmbeddingProcessor
+                if (first != null && first.length > 1 && !first[1].trim().startsWith("[")) {
+                    first = readRecord();
+                }
+                this.next = first == null ? null : parse(first);
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+            this.dimension = next == null ? 0 : next.vector().length;
+        }
+
+        @Override
+        public int dimension() {
+            return dimension;
+        }
+
+        @Override
+        public long estimatedRows() {
+            return fileBytes / ((long) dimension * ESTIMATED_BYTES_PER_VALUE + ESTIMATED_BYTES_PER_ROW);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    String[] record = readRecord();
+                    if (record != null) {
+                        next = parse(record);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Row row = next;
+            next = null;
+            if (row.vector().length != dimension) {
+                throw new IllegalArgumentException(path + " line " + line + " has a " + row.vector().length
+                        + "-dimension vector, the first row a " + dimension + "-dimension one");
+            }
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+
+        private String[] readRecord() throws IOException {
+            try {
+                String[] record = reader.readNext();
+                line++;
+                return record;
+            } catch (CsvValidationException e) {
+                throw new IOException("Malformed CSV in " + path + " near line " + line, e);
+            }
+        }
+
+        private Row parse(String[] record) {
+            if (record.length < 2) {
+                throw new IllegalArgumentException(path + " line " + line + " has no embedding column");
+            }
+            return new Row(parseVector(record[1]), record[0], record.length > 2 ? parseMetadata(record[2]) : Map.of());
+        }
+
+        private float[] parseVector(String value) {
+            String trimmed = value.trim();
+            if (!trimmed.startsWith("[") || !trimmed.endsWith("]")) {
+                throw new IllegalArgumentException(path + " line " + line + " has no [x, y, ...] embedding");
+            }
+            String body = trimmed.substring(1, trimmed.length() - 1);
+            if (body.isBlank()) {
+                return new float[0];
+            }
+            String[] parts = body.split(",");
+            float[] vector = new float[parts.length];
+            try {
+                for (int i = 0; i < parts.length; i++) {
+                    vector[i] = Float.parseFloat(parts[i].trim());
+                }
+            } catch (NumberFormatException e) {
+                // Its message would quote the file's contents back to the caller
+                throw new IllegalArgumentException(path + " line " + line + " has a malformed embedding");
+            }
+            return vector;
+        }
+
+        // Metadata.toString() is "Metadata { metadata = {k=v, k=v} }"; a value containing ", " and "=" is
+        // ambiguous in that form, so the pairs are split at ", " followed by something that looks like a key
+        private Map<String, Object> parseMetadata(String value) {
+            String trimmed = value.trim();
+            if (trimmed.isEmpty()) {
+                return Map.of();
+            }
+            if (trimmed.startsWith("{")) {
+                try {
+                    return objectMapper.readValue(trimmed, METADATA_TYPE);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(path + " line " + line + " has malformed JSON metadata", e);
+                }
+            }
+            if (!trimmed.startsWith(METADATA_PREFIX) || !trimmed.endsWith(METADATA_SUFFIX)) {
+                throw new IllegalArgumentException(path + " line " + line + " has unrecognised metadata");
+            }
+            String body = trimmed.substring(METADATA_PREFIX.length(), trimmed.length() - METADATA_SUFFIX.length());
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            if (body.isEmpty()) {
+                return metadata;
+            }
+            for (String pair : body.split(", (?=[^,=]+=)")) {
+                int separator = pair.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException(path + " line " + line + " has a metadata entry without a value");
+                }
+                metadata.put(pair.substring(0, separator), pair.substring(separator + 1));
+            }
+            return metadata;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.fusion.utils;
+
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Splits a PDF into text segments while reading it, one page at a time. Parsed PDF streams are buffered
+ * in temporary files rather than on the heap, and only the text of the current page plus an unsplit tail
+ * is held in memory, so memory use depends on the page size rather than the document size.
+ * Text is handed to the recursive splitter in windows that end at a paragraph or line break, so the
+ * segments match a whole-document split except near window boundaries. Segments carry the same
+ * file_name, absolute_directory_path and running index metadata as FileSystemDocumentLoader output.
+ * Not thread-safe.
+ */
+public class StreamingPdfSegmenter implements Iterator<TextSegment>, AutoCloseable {
+
+    // Text gathered before splitting, in segments; larger windows move fewer segment boundaries
+    private static final int WINDOW_SEGMENTS = 64;
+
+    private final PDDocument document;
+    private final PDFTextStripper stripper;
+    private final DocumentSplitter splitter;
+    private final Metadata metadata;
+    private final int pageCount;
+    private final int windowChars;
+
+    private final StringBuilder pending = new StringBuilder();
+    private final ArrayDeque<TextSegment> ready = new ArrayDeque<>();
+    private int nextPage = 1;
+    private int segmentIndex;
+    private long parseNanos;
+    private long splitNanos;
+
+    private StreamingPdfSegmenter(PDDocument document, Metadata metadata, int maxSegmentChars, int overlapChars,
+                                  long loadNanos) throws IOException {
+        this.document = document;
+        this.parseNanos = loadNanos;
+        this.stripper = new PDFTextStripper();
+        this.splitter = DocumentSplitters.recursive(maxSegmentChars, overlapChars);
+        this.metadata = metadata;
+        this.pageCount = document.getNumberOfPages();
+        this.windowChars = maxSegmentChars * WINDOW_SEGMENTS;
+    }
+
+    public static StreamingPdfSegmenter open(Path file, Metadata metadata, int maxSegmentChars, int overlapChars) throws IOException {
+        long start = System.nanoTime();
+        PDDocument document = PDDocument.load(file.toFile(), MemoryUsageSetting.setupTempFileOnly());
+        try {
+            Metadata documentMetadata = metadata.copy()
+                    .put("file_name", file.getFileName().toString())
+                    .put("absolute_directory_path", file.toAbsolutePath().getParent().toString());
+            return new StreamingPdfSegmenter(document, documentMetadata, maxSegmentChars, overlapChars,
+                    System.nanoTime() - start);
+        } catch (IOException | RuntimeException e) {
+            document.close();
+            throw e;
+        }
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getPagesRead() {
+        return nextPage - 1;
+    }
+
+    // Number of segments returned so far
+    public int getSegmentsProduced() {
+        return segmentIndex - ready.size();
+    }
+
+    // Time spent loading the document and extracting page text so far
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    // Time spent in the splitter so far
+    public long getSplitNanos() {
+        return splitNanos;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (ready.isEmpty() && (nextPage <= pageCount || pending.length() > 0)) {
+                if (nextPage <= pageCount) {
+                    readPage();
+                } else {
+                    splitPending(pending.length());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not extract text from page " + nextPage, e);
+        }
+        return !ready.isEmpty();
+    }
+
+    @Override
+    public TextSegment next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return ready.poll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        document.close();
+    }
+
+    private void readPage() throws IOException {
+        stripper.setStartPage(nextPage);
+        stripper.setEndPage(nextPage);
+        long start = System.nanoTime();
+        pending.append(stripper.getText(document));
+        parseNanos += System.nanoTime() - start;
+        nextPage++;
+        if (pending.length() >= windowChars) {
+            splitPending(breakPoint());
+        }
+    }
+
+    // End of the last paragraph in the window, else of its last line or word; the rest waits for the next page
+    private int breakPoint() {
+        int floor = pending.length() / 2;
+        int paragraph = pending.lastIndexOf("\n\n");
+        if (paragraph >= floor) {
+            return paragraph + 2;
+        }
+        int line = pending.lastIndexOf("\n");
+        if (line >= floor) {
+            return line + 1;
+        }
+        int word = pending.lastIndexOf(" ");
+        return word >= floor ? word + 1 : pending.length();
+    }
+
+    private void splitPending(int end) {
+        String text = pending.substring(0, end);
+        pending.delete(0, end);
+        if (text.isBlank()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<TextSegment> segments = splitter.split(Document.from(text, metadata.copy()));
+        splitNanos += System.nanoTime() - start;
+        for (TextSegment segment : segments) {
+            // The splitter numbers segments per window; renumber them across the document
+            Metadata segmentMetadata = segment.metadata().copy().put("index", String.valueOf(segmentIndex++));
+            ready.add(TextSegment.from(segment.text(), segmentMetadata));
+        }
+    }
+}
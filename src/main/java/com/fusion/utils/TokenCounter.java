@@ -0,0 +1,33 @@
+package com.fusion.utils;
+
+import com.fusion.store.CachingEmbeddingModel;
+import com.fusion.store.TimedEmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+
+import java.util.List;
+
+/**
+ * Implemented by embedding models that run texts as padded batches and can tell how many tokens each text
+ * takes, so callers can group texts of similar length into the same batch (see {@link LengthBuckets}).
+ */
+@FunctionalInterface
+public interface TokenCounter {
+
+    // Tokens per text, after truncation and including special tokens
+    int[] count(List<String> texts);
+
+    // The model's counter, looking through the disk cache and timing wrappers; null if the model doesn't batch by padding
+    static TokenCounter of(EmbeddingModel model) {
+        EmbeddingModel target = model;
+        while (true) {
+            if (target instanceof CachingEmbeddingModel caching) {
+                target = caching.getDelegate();
+            } else if (target instanceof TimedEmbeddingModel timed) {
+                target = timed.getDelegate();
+            } else {
+                break;
+            }
+        }
+        return target instanceof TokenCounter counter ? counter : null;
+    }
+}
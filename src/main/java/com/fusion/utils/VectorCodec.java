@@ -0,0 +1,153 @@
+package com.fusion.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Compact wire encodings for embedding vectors. All multi-byte encodings are little-endian.
+ */
+public final class VectorCodec {
+
+    public static final String FLOAT16_MEDIA_TYPE = "application/x-float16";
+    public static final String INT8_MEDIA_TYPE = "application/x-int8";
+
+    public enum Encoding {
+        JSON, FLOAT32, BASE64, FLOAT16, INT8;
+
+        // Parses a format request parameter such as "float16"; null or blank means JSON
+        public static Encoding fromFormat(String format) {
+            if (format == null || format.isBlank()) {
+                return JSON;
+            }
+            try {
+                return valueOf(format.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported embedding format: " + format
+                        + " (expected one of json, float32, base64, float16, int8)");
+            }
+        }
+
+        // Picks the first encoding named by an Accept header; anything unrecognised means JSON
+        public static Encoding fromAccept(String accept) {
+            if (accept == null) {
+                return JSON;
+            }
+            for (String part : accept.split(",")) {
+                String mediaType = part.split(";")[0].trim().toLowerCase(Locale.ROOT);
+                switch (mediaType) {
+                    case "application/octet-stream":
+                        return FLOAT32;
+                    case FLOAT16_MEDIA_TYPE:
+                        return FLOAT16;
+                    case INT8_MEDIA_TYPE:
+                        return INT8;
+                    case "text/plain":
+                        return BASE64;
+                    case "application/json":
+                        return JSON;
+                    default:
+                        break;
+                }
+            }
+            return JSON;
+        }
+    }
+
+    // Symmetric scalar quantization: value ~= code * scale
+    public record Int8Vector(byte[] codes, float scale) {
+    }
+
+    private VectorCodec() {
+    }
+
+    public static byte[] toFloat32(float[] vector, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < length; i++) {
+            buffer.putFloat(vector[i]);
+        }
+        return buffer.array();
+    }
+
+    public static String toBase64(float[] vector, int length) {
+        return Base64.getEncoder().encodeToString(toFloat32(vector, length));
+    }
+
+    public static byte[] toFloat16(float[] vector, int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length * Short.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < length; i++) {
+            buffer.putShort(floatToHalf(vector[i]));
+        }
+        return buffer.array();
+    }
+
+    public static Int8Vector toInt8(float[] vector, int length) {
+        float maxAbs = 0f;
+        for (int i = 0; i < length; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(vector[i]));
+        }
+        float scale = maxAbs / 127f;
+        byte[] codes = new byte[length];
+        if (scale > 0f) {
+            for (int i = 0; i < length; i++) {
+                codes[i] = (byte) Math.max(-127, Math.min(127, Math.round(vector[i] / scale)));
+            }
+        }
+        return new Int8Vector(codes, scale);
+    }
+
+    public static float[] fromFloat32(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[bytes.length / Float.BYTES];
+        buffer.asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    // IEEE 754 binary32 -> binary16, rounding to nearest; out-of-range values saturate to infinity
+    public static short floatToHalf(float value) {
+        int bits = Float.floatToIntBits(value);
+        int sign = (bits >>> 16) & 0x8000;
+        int rounded = (bits & 0x7fffffff) + 0x1000;
+
+        if (rounded >= 0x47800000) {
+            if ((bits & 0x7fffffff) >= 0x47800000) {
+                if (rounded < 0x7f800000) {
+                    return (short) (sign | 0x7c00);
+                }
+                // NaN or infinity keeps its payload bits
+                return (short) (sign | 0x7c00 | ((bits & 0x007fffff) >>> 13));
+            }
+            return (short) (sign | 0x7bff);
+        }
+        if (rounded >= 0x38800000) {
+            return (short) (sign | ((rounded - 0x38000000) >>> 13));
+        }
+        if (rounded < 0x33000000) {
+            return (short) sign;
+        }
+        // Subnormal half
+        int exponent = (bits & 0x7fffffff) >>> 23;
+        return (short) (sign | ((((bits & 0x7fffff) | 0x800000) + (0x800000 >>> (exponent - 102))) >>> (126 - exponent)));
+    }
+
+    public static float halfToFloat(short half) {
+        int bits = half & 0xffff;
+        int sign = (bits & 0x8000) << 16;
+        int exponent = (bits >>> 10) & 0x1f;
+        int mantissa = bits & 0x3ff;
+
+        if (exponent == 0x1f) {
+            return Float.intBitsToFloat(sign | 0x7f800000 | (mantissa << 13));
+        }
+        if (exponent == 0) {
+            if (mantissa == 0) {
+                return Float.intBitsToFloat(sign);
+            }
+            // Subnormal: value = mantissa * 2^-24
+            float magnitude = mantissa * 0x1p-24f;
+            return sign == 0 ? magnitude : -magnitude;
+        }
+        return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+    }
+}
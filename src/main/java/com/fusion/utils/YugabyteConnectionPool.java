@@ -2,6 +2,8 @@ package com.fusion;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 
 import javax.sql.DataSource;
 import java.sql.Connection;
@@ -10,6 +12,7 @@ import java.sql.SQLException;
 public class YugabyteConnectionPool {
 
     private static HikariDataSource dataSource;
+    private static boolean metricsBound;
 
     static {
         HikariConfig config = new HikariConfig();
@@ -25,6 +28,8 @@ public class YugabyteConnectionPool {
         config.setConnectionTimeout(30000);
         config.setIdleTimeout(600000);
         config.setMaxLifetime(1800000);
+        // Tags the pool's hikaricp.* meters
+        config.setPoolName("yugabyte-pool");
 
         // Other optional settings
         config.addDataSourceProperty("cachePrepStmts", "true");
@@ -40,6 +45,14 @@ public class YugabyteConnectionPool {
         return dataSource.getConnection();
     }
 
+    // Publishes the pool's connection gauges and acquire/usage timers to the registry; Hikari allows this only once
+    public static synchronized void bindMetrics(MeterRegistry registry) {
+        if (!metricsBound) {
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+            metricsBound = true;
+        }
+    }
+
     // Method to close the pool
     public static void closePool() {
         if (dataSource != null) {